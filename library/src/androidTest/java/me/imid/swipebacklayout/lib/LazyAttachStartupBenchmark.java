@@ -0,0 +1,127 @@
+package me.imid.swipebacklayout.lib;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
+import android.view.ViewTreeObserver;
+import android.widget.TextView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import me.imid.swipebacklayout.lib.app.SwipeBackActivity;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the time from onCreate to the first frame of a plain
+ * AppCompatActivity with a SwipeBackActivity attaching eagerly and lazily.
+ * Medians are logged and reported as instrumentation status.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LazyAttachStartupBenchmark {
+    private static final String TAG = "LazyAttachStartup";
+
+    private static final int WARMUP_LAUNCHES = 3;
+
+    private static final int LAUNCHES = 15;
+
+    private static CountDownLatch sFirstFrame;
+
+    private static long sCreateNanos;
+
+    private static long sFirstFrameNanos;
+
+    @Test
+    public void startup() throws Exception {
+        final long plain = measure(PlainActivity.class);
+        final long eager = measure(EagerActivity.class);
+        final long lazy = measure(LazyActivity.class);
+
+        final Bundle results = new Bundle();
+        results.putLong("plain_median_us", plain / 1000);
+        results.putLong("eager_median_us", eager / 1000);
+        results.putLong("lazy_median_us", lazy / 1000);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+        Log.i(TAG, "Median onCreate to first frame: plain " + plain / 1000 + "us, eager "
+                + eager / 1000 + "us, lazy " + lazy / 1000 + "us");
+    }
+
+    private static long measure(Class<? extends Activity> activityClass) throws Exception {
+        final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        final Intent intent = new Intent(instrumentation.getTargetContext(), activityClass)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        final long[] samples = new long[LAUNCHES];
+        for (int i = -WARMUP_LAUNCHES; i < LAUNCHES; i++) {
+            sFirstFrame = new CountDownLatch(1);
+            final Activity activity = instrumentation.startActivitySync(intent);
+            assertTrue("No frame drawn", sFirstFrame.await(5, TimeUnit.SECONDS));
+            if (i >= 0) {
+                samples[i] = sFirstFrameNanos - sCreateNanos;
+            }
+            activity.finish();
+            instrumentation.waitForIdleSync();
+        }
+        Arrays.sort(samples);
+        return samples[LAUNCHES / 2];
+    }
+
+    private static void onCreateStarted() {
+        sCreateNanos = System.nanoTime();
+    }
+
+    private static void onContentSet(final Activity activity) {
+        final ViewTreeObserver observer = activity.getWindow().getDecorView().getViewTreeObserver();
+        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                // Layout of the first frame is done, only drawing is left.
+                sFirstFrameNanos = System.nanoTime();
+                activity.getWindow().getDecorView().getViewTreeObserver()
+                        .removeOnPreDrawListener(this);
+                sFirstFrame.countDown();
+                return true;
+            }
+        });
+    }
+
+    public static class PlainActivity extends AppCompatActivity {
+        @Override
+        protected void onCreate(Bundle savedInstanceState) {
+            onCreateStarted();
+            super.onCreate(savedInstanceState);
+            setContentView(new TextView(this));
+            onContentSet(this);
+        }
+    }
+
+    public static class EagerActivity extends SwipeBackActivity {
+        @Override
+        protected void onCreate(Bundle savedInstanceState) {
+            onCreateStarted();
+            super.onCreate(savedInstanceState);
+            setContentView(new TextView(this));
+            onContentSet(this);
+        }
+    }
+
+    public static class LazyActivity extends SwipeBackActivity {
+        @Override
+        protected void onCreate(Bundle savedInstanceState) {
+            onCreateStarted();
+            super.onCreate(savedInstanceState);
+            getSwipeBackLayout().setLazyAttachEnabled(true);
+            setContentView(new TextView(this));
+            onContentSet(this);
+        }
+    }
+}
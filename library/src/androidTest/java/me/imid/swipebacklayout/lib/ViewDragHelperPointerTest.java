@@ -0,0 +1,152 @@
+package me.imid.swipebacklayout.lib;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives a {@link ViewDragHelper} with touch streams whose pointer IDs are
+ * spread over their whole 0 to 31 range, as sparse as the system may hand
+ * them out.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ViewDragHelperPointerTest {
+    private static final int SIZE = 1000;
+
+    private static final int MAX_POINTER_ID = 31;
+
+    // ViewDragHelper.MAX_POINTERS
+    private static final int MAX_POINTERS = 10;
+
+    private FrameLayout mParent;
+
+    private View mChild;
+
+    private ViewDragHelper mHelper;
+
+    private long mDownTime;
+
+    @Before
+    public void setUp() {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        mParent = new FrameLayout(context);
+        mChild = new View(context);
+        mParent.addView(mChild);
+        mParent.measure(View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY));
+        mParent.layout(0, 0, SIZE, SIZE);
+        mHelper = ViewDragHelper.create(mParent, new ViewDragHelper.Callback() {
+            @Override
+            public boolean tryCaptureView(View view, int pointerId) {
+                return view == mChild;
+            }
+
+            @Override
+            public int getViewHorizontalDragRange(View child) {
+                return SIZE;
+            }
+
+            @Override
+            public int clampViewPositionHorizontal(View child, int left, int dx) {
+                return left;
+            }
+        });
+        mHelper.setEdgeTrackingEnabled(ViewDragHelper.EDGE_ALL);
+        mDownTime = SystemClock.uptimeMillis();
+    }
+
+    @Test
+    public void highPointerIdsDragTheView() {
+        mHelper.processTouchEvent(event(MotionEvent.ACTION_DOWN, 0,
+                new int[] {MAX_POINTER_ID}, new float[] {100}));
+        assertEquals(ViewDragHelper.STATE_DRAGGING, mHelper.getViewDragState());
+        assertEquals(MAX_POINTER_ID, mHelper.getActivePointerId());
+        assertTrue(mHelper.isPointerDown(MAX_POINTER_ID));
+
+        mHelper.processTouchEvent(event(MotionEvent.ACTION_MOVE, 0,
+                new int[] {MAX_POINTER_ID}, new float[] {150}));
+        assertEquals(50, mChild.getLeft());
+
+        // A second pointer with a lower, non adjacent ID takes over once the
+        // first one goes up.
+        mHelper.processTouchEvent(event(MotionEvent.ACTION_POINTER_DOWN, 1,
+                new int[] {MAX_POINTER_ID, 17}, new float[] {150, 300}));
+        assertTrue(mHelper.isPointerDown(17));
+        mHelper.processTouchEvent(event(MotionEvent.ACTION_POINTER_UP, 0,
+                new int[] {MAX_POINTER_ID, 17}, new float[] {150, 300}));
+        assertFalse(mHelper.isPointerDown(MAX_POINTER_ID));
+        assertEquals(17, mHelper.getActivePointerId());
+
+        mHelper.processTouchEvent(event(MotionEvent.ACTION_MOVE, 0,
+                new int[] {17}, new float[] {320}));
+        assertEquals(70, mChild.getLeft());
+
+        mHelper.processTouchEvent(event(MotionEvent.ACTION_UP, 0,
+                new int[] {17}, new float[] {320}));
+        assertFalse(mHelper.isPointerDown(17));
+        assertTrue(mHelper.getViewDragState() != ViewDragHelper.STATE_DRAGGING);
+    }
+
+    @Test
+    public void pointersBeyondCapacityAreIgnored() {
+        final int count = MAX_POINTERS + 2;
+        final int[] ids = new int[count];
+        final float[] xs = new float[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = MAX_POINTER_ID - i * 2;
+            xs[i] = 100 + i * 10;
+        }
+        for (int i = 1; i <= count; i++) {
+            final int[] downIds = new int[i];
+            final float[] downXs = new float[i];
+            System.arraycopy(ids, 0, downIds, 0, i);
+            System.arraycopy(xs, 0, downXs, 0, i);
+            mHelper.shouldInterceptTouchEvent(event(i == 1
+                    ? MotionEvent.ACTION_DOWN : MotionEvent.ACTION_POINTER_DOWN,
+                    i - 1, downIds, downXs));
+        }
+        for (int i = 0; i < count; i++) {
+            assertEquals("Pointer " + ids[i], i < MAX_POINTERS, mHelper.isPointerDown(ids[i]));
+        }
+
+        // Moving every pointer, tracked or not, is fine.
+        mHelper.shouldInterceptTouchEvent(event(MotionEvent.ACTION_MOVE, 0, ids, xs));
+
+        mHelper.shouldInterceptTouchEvent(event(MotionEvent.ACTION_CANCEL, 0, ids, xs));
+        for (int id : ids) {
+            assertFalse(mHelper.isPointerDown(id));
+        }
+    }
+
+    private MotionEvent event(int action, int actionIndex, int[] ids, float[] xs) {
+        final int count = ids.length;
+        final MotionEvent.PointerProperties[] properties =
+                new MotionEvent.PointerProperties[count];
+        final MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[count];
+        for (int i = 0; i < count; i++) {
+            properties[i] = new MotionEvent.PointerProperties();
+            properties[i].id = ids[i];
+            properties[i].toolType = MotionEvent.TOOL_TYPE_FINGER;
+            coords[i] = new MotionEvent.PointerCoords();
+            coords[i].x = xs[i];
+            coords[i].y = SIZE / 2;
+        }
+        final int maskedAction = action == MotionEvent.ACTION_POINTER_DOWN
+                || action == MotionEvent.ACTION_POINTER_UP
+                ? action | (actionIndex << MotionEvent.ACTION_POINTER_INDEX_SHIFT) : action;
+        return MotionEvent.obtain(mDownTime, SystemClock.uptimeMillis(), maskedAction, count,
+                properties, coords, 0, 0, 1, 1, 0, 0, 0, 0);
+    }
+}
@@ -0,0 +1,115 @@
+package me.imid.swipebacklayout.lib;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.v4.view.ViewCompat;
+import android.view.Choreographer;
+import android.view.View;
+
+/**
+ * Runs a callback on the next display frame. Scheduling several times before
+ * the frame arrives still runs the callback only once, so work requested by
+ * every input event is coalesced into one pass per vsync.
+ * <p>
+ * Uses a {@link Choreographer.FrameCallback} where available and falls back to
+ * {@link ViewCompat#postOnAnimation(View, Runnable)} on older platforms.
+ * </p>
+ */
+class FrameScheduler {
+    interface Callback {
+        /**
+         * Called once per scheduled frame.
+         *
+         * @param frameTimeNanos The time at which the frame started rendering,
+         *                       in the {@link System#nanoTime()} time base
+         */
+        void doFrame(long frameTimeNanos);
+    }
+
+    private final View mView;
+
+    private final Callback mCallback;
+
+    private final FrameCallbackJB mFrameCallback;
+
+    private final Runnable mFallbackCallback = new Runnable() {
+        @Override
+        public void run() {
+            dispatchFrame(System.nanoTime());
+        }
+    };
+
+    private boolean mScheduled;
+
+    FrameScheduler(View view, Callback callback) {
+        mView = view;
+        mCallback = callback;
+        mFrameCallback = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                ? new FrameCallbackJB(this) : null;
+    }
+
+    /**
+     * Request a call to {@link Callback#doFrame(long)} on the next frame. Does
+     * nothing if a frame is already scheduled.
+     */
+    void schedule() {
+        if (mScheduled) {
+            return;
+        }
+        mScheduled = true;
+        if (mFrameCallback != null) {
+            mFrameCallback.post();
+        } else {
+            ViewCompat.postOnAnimation(mView, mFallbackCallback);
+        }
+    }
+
+    /**
+     * Drop a scheduled frame, if any.
+     */
+    void cancel() {
+        if (!mScheduled) {
+            return;
+        }
+        mScheduled = false;
+        if (mFrameCallback != null) {
+            mFrameCallback.remove();
+        } else {
+            mView.removeCallbacks(mFallbackCallback);
+        }
+    }
+
+    boolean isScheduled() {
+        return mScheduled;
+    }
+
+    private void dispatchFrame(long frameTimeNanos) {
+        if (!mScheduled) {
+            return;
+        }
+        mScheduled = false;
+        mCallback.doFrame(frameTimeNanos);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class FrameCallbackJB implements Choreographer.FrameCallback {
+        private final FrameScheduler mScheduler;
+
+        FrameCallbackJB(FrameScheduler scheduler) {
+            mScheduler = scheduler;
+        }
+
+        void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void remove() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mScheduler.dispatchFrame(frameTimeNanos);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package me.imid.swipebacklayout.lib;
+
+import java.util.Arrays;
+
+/**
+ * Maps pointer IDs, which can be anything from 0 to 31, to a fixed number of
+ * tracking slots, so that per pointer state lives in arrays sized after the
+ * slots rather than after the largest ID. Nothing is allocated once the table
+ * is created.
+ */
+final class PointerSlots {
+    // Pointer id held by each slot, INVALID_POINTER when free
+    private final int[] mPointerIds;
+
+    /**
+     * @param capacity Number of pointers that can be tracked at the same time
+     */
+    PointerSlots(int capacity) {
+        mPointerIds = new int[capacity];
+        clear();
+    }
+
+    int getCapacity() {
+        return mPointerIds.length;
+    }
+
+    /**
+     * Find the slot holding the given pointer.
+     *
+     * @param pointerId pointer ID as specified by MotionEvent
+     * @return the slot index, or -1 if the pointer is not being tracked
+     */
+    int find(int pointerId) {
+        if (pointerId == ViewDragHelper.INVALID_POINTER) {
+            return -1;
+        }
+        for (int i = 0; i < mPointerIds.length; i++) {
+            if (mPointerIds[i] == pointerId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the slot holding the given pointer, claiming a free one if the
+     * pointer is not tracked yet.
+     *
+     * @param pointerId pointer ID as specified by MotionEvent
+     * @return the slot index, or -1 if every slot is already taken
+     */
+    int obtain(int pointerId) {
+        final int slot = find(pointerId);
+        if (slot >= 0) {
+            return slot;
+        }
+        for (int i = 0; i < mPointerIds.length; i++) {
+            if (mPointerIds[i] == ViewDragHelper.INVALID_POINTER) {
+                mPointerIds[i] = pointerId;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the pointer held by a slot, or
+     * {@link ViewDragHelper#INVALID_POINTER} if the slot is free
+     */
+    int getPointerId(int slot) {
+        return mPointerIds[slot];
+    }
+
+    /**
+     * Free a slot.
+     */
+    void release(int slot) {
+        mPointerIds[slot] = ViewDragHelper.INVALID_POINTER;
+    }
+
+    /**
+     * Free every slot.
+     */
+    void clear() {
+        Arrays.fill(mPointerIds, ViewDragHelper.INVALID_POINTER);
+    }
+}
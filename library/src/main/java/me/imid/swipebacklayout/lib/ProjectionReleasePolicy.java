@@ -0,0 +1,55 @@
+package me.imid.swipebacklayout.lib;
+
+/**
+ * Decides the outcome of a released swipe by where the content would come to
+ * rest if it kept decelerating from its release velocity.
+ * <p>
+ * With a deceleration rate r per millisecond, a velocity v in pixels per
+ * second travels v / 1000 * r / (1 - r) pixels before stopping. The swipe
+ * finishes when the progress at that resting point is past the scroll
+ * threshold. A short flick against the swipe late in the gesture therefore no
+ * longer cancels it, and a slow drag released just short of the threshold
+ * still finishes if it is heading past it.
+ * </p>
+ */
+public class ProjectionReleasePolicy implements SwipeBackLayout.ReleasePolicy {
+    /**
+     * Deceleration rate matching the feel of a regular scroll view.
+     */
+    public static final float DEFAULT_DECELERATION_RATE = 0.998f;
+
+    // Distance in pixels covered per pixel per second of release velocity
+    private final float mProjectionFactor;
+
+    public ProjectionReleasePolicy() {
+        this(DEFAULT_DECELERATION_RATE);
+    }
+
+    /**
+     * @param decelerationRate Fraction of the velocity kept after each
+     *                         millisecond, between 0 and 1. Higher values
+     *                         project further.
+     */
+    public ProjectionReleasePolicy(float decelerationRate) {
+        if (decelerationRate <= 0 || decelerationRate >= 1) {
+            throw new IllegalArgumentException("Deceleration rate should be between 0 and 1.0");
+        }
+        mProjectionFactor = decelerationRate / (1 - decelerationRate) / 1000;
+    }
+
+    /**
+     * @param velocity Velocity in pixels per second
+     * @return Distance in pixels travelled before coming to rest
+     */
+    public float project(float velocity) {
+        return velocity * mProjectionFactor;
+    }
+
+    @Override
+    public boolean shouldFinish(float scrollPercent, float velocity, int range, float threshold) {
+        if (range <= 0) {
+            return scrollPercent > threshold;
+        }
+        return scrollPercent + project(velocity) / range > threshold;
+    }
+}
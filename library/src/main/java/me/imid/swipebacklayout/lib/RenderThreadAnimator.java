@@ -0,0 +1,111 @@
+package me.imid.swipebacklayout.lib;
+
+import android.animation.Animator;
+import android.animation.TimeInterpolator;
+import android.os.Build;
+import android.util.Log;
+import android.view.View;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * Creates animators of a view translation or alpha that run on the render
+ * thread, so they keep going while the UI thread is busy.
+ * <p>
+ * This relies on the framework's <code>RenderNodeAnimator</code>, which is not
+ * part of the public API. It is only used from Android 5.0, where it appeared,
+ * up to Android 8.1; later releases restrict access to non-public classes.
+ * Creation returns null whenever the class can't be used, callers then animate
+ * on the UI thread as usual.
+ * </p>
+ */
+final class RenderThreadAnimator {
+    private static final String TAG = "RenderThreadAnimator";
+
+    // RenderNodeAnimator property constants
+    private static final int TRANSLATION_X = 0;
+
+    private static final int TRANSLATION_Y = 1;
+
+    private static final int ALPHA = 11;
+
+    // Build.VERSION_CODES.O_MR1, the last release without hidden API checks
+    private static final int MAX_SUPPORTED_SDK = 27;
+
+    private static boolean sResolved;
+
+    private static Constructor<?> sConstructor;
+
+    private static Method sSetTarget;
+
+    private RenderThreadAnimator() {
+    }
+
+    static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                && Build.VERSION.SDK_INT <= MAX_SUPPORTED_SDK;
+    }
+
+    /**
+     * Create an animator moving the translation of a view to a final value,
+     * starting from its current one.
+     *
+     * @param target       View to animate, must be hardware accelerated
+     * @param vertical     true to animate translationY, false for translationX
+     * @param finalValue   Translation at the end of the animation
+     * @param duration     Duration in milliseconds
+     * @param interpolator Timing of the animation
+     * @return an animator that has not been started, or null if render thread
+     * animations are not available
+     */
+    static Animator create(View target, boolean vertical, float finalValue, long duration,
+                           TimeInterpolator interpolator) {
+        return create(target, vertical ? TRANSLATION_Y : TRANSLATION_X, finalValue, duration,
+                interpolator);
+    }
+
+    /**
+     * Create an animator moving the alpha of a view to a final value, starting
+     * from its current one.
+     *
+     * @see #create(View, boolean, float, long, TimeInterpolator)
+     */
+    static Animator createAlpha(View target, float finalValue, long duration,
+                                TimeInterpolator interpolator) {
+        return create(target, ALPHA, finalValue, duration, interpolator);
+    }
+
+    private static Animator create(View target, int property, float finalValue, long duration,
+                                   TimeInterpolator interpolator) {
+        if (!isSupported() || !target.isHardwareAccelerated() || !resolve()) {
+            return null;
+        }
+        try {
+            final Animator animator = (Animator) sConstructor.newInstance(property, finalValue);
+            sSetTarget.invoke(animator, target);
+            animator.setDuration(duration);
+            animator.setInterpolator(interpolator);
+            return animator;
+        } catch (Throwable t) {
+            Log.w(TAG, "Failed to create a render thread animator", t);
+            return null;
+        }
+    }
+
+    private static boolean resolve() {
+        if (!sResolved) {
+            sResolved = true;
+            try {
+                final Class<?> clazz = Class.forName("android.view.RenderNodeAnimator");
+                sConstructor = clazz.getConstructor(int.class, float.class);
+                sSetTarget = clazz.getMethod("setTarget", View.class);
+            } catch (Throwable t) {
+                Log.w(TAG, "Render thread animators are not available", t);
+                sConstructor = null;
+                sSetTarget = null;
+            }
+        }
+        return sConstructor != null;
+    }
+}
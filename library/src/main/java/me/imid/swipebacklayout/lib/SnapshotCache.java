@@ -0,0 +1,89 @@
+package me.imid.swipebacklayout.lib;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.util.LruCache;
+
+/**
+ * Process-wide store of content snapshots used as swipe underlays, bounded by
+ * a memory budget. Least recently used snapshots are dropped first, and the
+ * whole cache is released when the system asks the process to trim memory.
+ * <p>
+ * Evicted bitmaps are not recycled, a layout may still be drawing one; they
+ * are left to the garbage collector.
+ * </p>
+ */
+final class SnapshotCache {
+    // Fraction of the heap limit snapshots may take
+    private static final int BUDGET_DIVISOR = 8;
+
+    private static SnapshotCache sInstance;
+
+    private final LruCache<Integer, Bitmap> mCache;
+
+    private SnapshotCache(Context context) {
+        final int budgetKb = (int) (Runtime.getRuntime().maxMemory() / 1024 / BUDGET_DIVISOR);
+        mCache = new LruCache<Integer, Bitmap>(budgetKb) {
+            @Override
+            protected int sizeOf(Integer key, Bitmap value) {
+                return getSize(value) / 1024;
+            }
+        };
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                trimMemory(level);
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+                // Snapshots taken in the old configuration no longer match.
+                mCache.evictAll();
+            }
+
+            @Override
+            public void onLowMemory() {
+                mCache.evictAll();
+            }
+        });
+    }
+
+    static SnapshotCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new SnapshotCache(context);
+        }
+        return sInstance;
+    }
+
+    Bitmap get(int key) {
+        return mCache.get(key);
+    }
+
+    void put(int key, Bitmap snapshot) {
+        mCache.put(key, snapshot);
+    }
+
+    void remove(int key) {
+        mCache.remove(key);
+    }
+
+    private void trimMemory(int level) {
+        // Covers the process going to the background as well, those levels
+        // are all higher.
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            mCache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            mCache.trimToSize(mCache.maxSize() / 2);
+        }
+    }
+
+    private static int getSize(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+}
@@ -0,0 +1,274 @@
+package me.imid.swipebacklayout.lib;
+
+/**
+ * Moves a point towards a target along a critically damped spring.
+ * <p>
+ * The motion is evaluated from the closed form solution of the spring
+ * equation at the time reported by a {@link Clock}, not integrated step by
+ * step, so the position after a given time does not depend on how many frames
+ * were delivered in between. The initial velocity is honoured exactly and the
+ * target can be moved while the spring is running without a discontinuity in
+ * position or velocity.
+ * </p>
+ * <p>
+ * Like {@link VelocityEstimator}, the settler has no dependency on the Android
+ * framework; inject a clock to drive it deterministically.
+ * </p>
+ */
+public class SpringSettler {
+    /**
+     * Source of the current time.
+     */
+    public interface Clock {
+        /**
+         * @return The current time in nanoseconds, from an arbitrary but
+         * monotonic origin
+         */
+        long nanoTime();
+    }
+
+    /**
+     * Clock backed by {@link System#nanoTime()}, the time base used by frame
+     * callbacks.
+     */
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * Stiffness used unless {@link #setStiffness(float)} is called. With unit
+     * mass this settles a full screen width in roughly a third of a second.
+     */
+    public static final float DEFAULT_STIFFNESS = 1000f;
+
+    // The spring is at rest once both displacement and velocity are below
+    // these, on both axes
+    private static final float REST_DISPLACEMENT = 0.5f; // px
+
+    private static final float REST_VELOCITY = 25f; // px/s
+
+    private final Clock mClock;
+
+    // Natural angular frequency, sqrt(stiffness / mass) with unit mass
+    private float mOmega;
+
+    private boolean mOvershootClamping;
+
+    private long mStartTime;
+
+    // Displacement from the target and velocity at mStartTime
+    private float mStartDispX;
+
+    private float mStartDispY;
+
+    private float mStartVelX;
+
+    private float mStartVelY;
+
+    private float mFinalX;
+
+    private float mFinalY;
+
+    private float mCurrX;
+
+    private float mCurrY;
+
+    private float mVelX;
+
+    private float mVelY;
+
+    private boolean mFinished = true;
+
+    public SpringSettler() {
+        this(SYSTEM_CLOCK);
+    }
+
+    /**
+     * @param clock Clock the motion is evaluated against
+     */
+    public SpringSettler(Clock clock) {
+        mClock = clock;
+        setStiffness(DEFAULT_STIFFNESS);
+    }
+
+    /**
+     * Set the spring stiffness, in pixels per second squared per pixel of
+     * displacement. Takes effect on the next {@link #start} or
+     * {@link #retarget}.
+     *
+     * @param stiffness Positive stiffness
+     */
+    public void setStiffness(float stiffness) {
+        if (stiffness <= 0) {
+            throw new IllegalArgumentException("Stiffness must be positive");
+        }
+        mOmega = (float) Math.sqrt(stiffness);
+    }
+
+    /**
+     * A critically damped spring launched fast enough towards its target
+     * passes it once before coming back. With clamping enabled the motion
+     * ends on the target instead.
+     *
+     * @param clamp true to stop at the target rather than overshoot it
+     */
+    public void setOvershootClamping(boolean clamp) {
+        mOvershootClamping = clamp;
+    }
+
+    /**
+     * Start moving from a position towards a target.
+     *
+     * @param startX  Start X position
+     * @param startY  Start Y position
+     * @param finalX  Target X position
+     * @param finalY  Target Y position
+     * @param xvel    Initial X velocity in pixels per second
+     * @param yvel    Initial Y velocity in pixels per second
+     */
+    public void start(float startX, float startY, float finalX, float finalY,
+                      float xvel, float yvel) {
+        mStartTime = mClock.nanoTime();
+        mFinalX = finalX;
+        mFinalY = finalY;
+        mStartDispX = startX - finalX;
+        mStartDispY = startY - finalY;
+        mStartVelX = xvel;
+        mStartVelY = yvel;
+        mCurrX = startX;
+        mCurrY = startY;
+        mVelX = xvel;
+        mVelY = yvel;
+        mFinished = false;
+    }
+
+    /**
+     * Move the target of a running spring, keeping its current position and
+     * velocity. Starts a spring from rest if none is running.
+     *
+     * @param finalX New target X position
+     * @param finalY New target Y position
+     */
+    public void retarget(float finalX, float finalY) {
+        if (mFinished) {
+            start(mCurrX, mCurrY, finalX, finalY, 0, 0);
+            return;
+        }
+        evaluate(mClock.nanoTime());
+        start(mCurrX, mCurrY, finalX, finalY, mVelX, mVelY);
+    }
+
+    /**
+     * Update the current position and velocity for the current time.
+     *
+     * @return true if the spring is still moving
+     */
+    public boolean computeOffset() {
+        if (mFinished) {
+            return false;
+        }
+        evaluate(mClock.nanoTime());
+        final float dispX = mCurrX - mFinalX;
+        final float dispY = mCurrY - mFinalY;
+        final boolean crossed = mOvershootClamping
+                && (crossed(mStartDispX, dispX) || crossed(mStartDispY, dispY));
+        if (crossed || isAtRest(dispX, mVelX) && isAtRest(dispY, mVelY)) {
+            abortAnimation();
+        }
+        return !mFinished;
+    }
+
+    /**
+     * Stop the spring and move it to its target.
+     */
+    public void abortAnimation() {
+        mCurrX = mFinalX;
+        mCurrY = mFinalY;
+        mVelX = 0;
+        mVelY = 0;
+        mFinished = true;
+    }
+
+    /**
+     * Stop the spring where it currently is.
+     */
+    public void forceFinished() {
+        mVelX = 0;
+        mVelY = 0;
+        mFinished = true;
+    }
+
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * @return X position as of the last {@link #computeOffset()}, rounded to
+     * whole pixels
+     */
+    public int getCurrX() {
+        return Math.round(mCurrX);
+    }
+
+    /**
+     * @return Y position as of the last {@link #computeOffset()}, rounded to
+     * whole pixels
+     */
+    public int getCurrY() {
+        return Math.round(mCurrY);
+    }
+
+    public int getFinalX() {
+        return Math.round(mFinalX);
+    }
+
+    public int getFinalY() {
+        return Math.round(mFinalY);
+    }
+
+    /**
+     * @return X velocity in pixels per second as of the last
+     * {@link #computeOffset()}
+     */
+    public float getXVelocity() {
+        return mVelX;
+    }
+
+    /**
+     * @return Y velocity in pixels per second as of the last
+     * {@link #computeOffset()}
+     */
+    public float getYVelocity() {
+        return mVelY;
+    }
+
+    /**
+     * Evaluate the spring at the given time. For unit mass and critical
+     * damping the displacement is x(t) = (x0 + (v0 + w * x0) * t) * e^(-w * t).
+     */
+    private void evaluate(long timeNanos) {
+        final float t = Math.max(0, timeNanos - mStartTime) / 1e9f;
+        final float decay = (float) Math.exp(-mOmega * t);
+
+        final float bx = mStartVelX + mOmega * mStartDispX;
+        final float dispX = (mStartDispX + bx * t) * decay;
+        mCurrX = mFinalX + dispX;
+        mVelX = (bx - mOmega * (mStartDispX + bx * t)) * decay;
+
+        final float by = mStartVelY + mOmega * mStartDispY;
+        final float dispY = (mStartDispY + by * t) * decay;
+        mCurrY = mFinalY + dispY;
+        mVelY = (by - mOmega * (mStartDispY + by * t)) * decay;
+    }
+
+    private static boolean isAtRest(float displacement, float velocity) {
+        return Math.abs(displacement) < REST_DISPLACEMENT && Math.abs(velocity) < REST_VELOCITY;
+    }
+
+    private static boolean crossed(float startDisplacement, float displacement) {
+        return startDisplacement > 0 ? displacement < 0 : startDisplacement < 0 && displacement > 0;
+    }
+}
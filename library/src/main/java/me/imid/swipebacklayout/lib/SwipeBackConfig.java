@@ -0,0 +1,322 @@
+package me.imid.swipebacklayout.lib;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.drawable.Drawable;
+import android.support.v4.content.ContextCompat;
+import android.util.AttributeSet;
+import android.util.SparseArray;
+import android.util.TypedValue;
+
+/**
+ * Immutable set of {@link SwipeBackLayout} settings: tracked edges, edge size,
+ * sensitivity, scroll threshold, scrim color and edge shadows.
+ * <p>
+ * A config is meant to be built once and shared by every layout it applies
+ * to, passed to {@link SwipeBackLayout#create(Context, SwipeBackConfig)}.
+ * Layouts created that way neither inflate XML nor resolve styled attributes.
+ * {@link #getDefault(Context)} keeps one config per
+ * <code>SwipeBackLayoutStyle</code> found in the themes it is asked about,
+ * for the current resource configuration.
+ * </p>
+ */
+public final class SwipeBackConfig {
+    private static final int DEFAULT_SCRIM_COLOR = 0x99000000;
+
+    private static final float DEFAULT_SCROLL_THRESHOLD = 0.3f;
+
+    private static final float DEFAULT_SENSITIVITY = 1f;
+
+    // Configs resolved from themes, by SwipeBackLayoutStyle resource
+    private static final SparseArray<SwipeBackConfig> sThemeConfigs = new SparseArray<>();
+
+    // Resource configuration the theme configs were resolved in
+    private static Configuration sThemeConfiguration;
+
+    private static SwipeBackConfig sDefault;
+
+    private final int mEdgeFlags;
+
+    private final int mEdgeSize;
+
+    private final float mSensitivity;
+
+    private final float mScrollThreshold;
+
+    private final int mScrimColor;
+
+    private final Drawable mShadowLeft;
+
+    private final Drawable mShadowRight;
+
+    private final Drawable mShadowBottom;
+
+    private SwipeBackConfig(Builder builder) {
+        mEdgeFlags = builder.mEdgeFlags;
+        mEdgeSize = builder.mEdgeSize;
+        mSensitivity = builder.mSensitivity;
+        mScrollThreshold = builder.mScrollThreshold;
+        mScrimColor = builder.mScrimColor;
+        mShadowLeft = builder.mShadowLeft;
+        mShadowRight = builder.mShadowRight;
+        mShadowBottom = builder.mShadowBottom;
+    }
+
+    /**
+     * Get the config for the theme of a context. Returns the config set with
+     * {@link #setDefault(SwipeBackConfig)} if any; otherwise the config is
+     * resolved from the theme the first time its
+     * <code>SwipeBackLayoutStyle</code> is seen, and reused until the resource
+     * configuration changes, as the edge size and shadows depend on it. Must
+     * be called on the main thread.
+     *
+     * @param context Context whose theme to use
+     * @return a shared config
+     */
+    public static SwipeBackConfig getDefault(Context context) {
+        if (sDefault != null) {
+            return sDefault;
+        }
+        final Configuration configuration = context.getResources().getConfiguration();
+        if (!configuration.equals(sThemeConfiguration)) {
+            // Sizes and drawables resolved for another density or screen
+            sThemeConfigs.clear();
+            sThemeConfiguration = new Configuration(configuration);
+        }
+        final TypedValue value = new TypedValue();
+        final int style = context.getTheme().resolveAttribute(R.attr.SwipeBackLayoutStyle,
+                value, true) ? value.resourceId : 0;
+        SwipeBackConfig config = sThemeConfigs.get(style);
+        if (config == null) {
+            config = fromTheme(context);
+            sThemeConfigs.put(style, config);
+        }
+        return config;
+    }
+
+    /**
+     * Set the config returned by {@link #getDefault(Context)} for every theme.
+     *
+     * @param config Config to use, or null to resolve configs from themes
+     */
+    public static void setDefault(SwipeBackConfig config) {
+        sDefault = config;
+    }
+
+    /**
+     * Resolve a config from the <code>SwipeBackLayoutStyle</code> of the
+     * theme of a context.
+     *
+     * @param context Context whose theme to use
+     * @return a new config
+     */
+    public static SwipeBackConfig fromTheme(Context context) {
+        return fromAttributes(context, null, R.attr.SwipeBackLayoutStyle);
+    }
+
+    static SwipeBackConfig fromAttributes(Context context, AttributeSet attrs, int defStyle) {
+        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.SwipeBackLayout, defStyle,
+                R.style.SwipeBackLayout);
+        final Builder builder = new Builder()
+                .setEdgeSize(a.getDimensionPixelSize(R.styleable.SwipeBackLayout_edge_size, -1))
+                .setEdgeFlags(SwipeBackLayout.EDGE_FLAGS[
+                        a.getInt(R.styleable.SwipeBackLayout_edge_flag, 0)])
+                .setShadow(ContextCompat.getDrawable(context, a.getResourceId(
+                        R.styleable.SwipeBackLayout_shadow_left, R.drawable.shadow_left)),
+                        SwipeBackLayout.EDGE_LEFT)
+                .setShadow(ContextCompat.getDrawable(context, a.getResourceId(
+                        R.styleable.SwipeBackLayout_shadow_right, R.drawable.shadow_right)),
+                        SwipeBackLayout.EDGE_RIGHT)
+                .setShadow(ContextCompat.getDrawable(context, a.getResourceId(
+                        R.styleable.SwipeBackLayout_shadow_bottom, R.drawable.shadow_bottom)),
+                        SwipeBackLayout.EDGE_BOTTOM);
+        a.recycle();
+        return builder.build();
+    }
+
+    /**
+     * @return a builder starting from the settings of this config
+     */
+    public Builder buildUpon() {
+        return new Builder()
+                .setEdgeFlags(mEdgeFlags)
+                .setEdgeSize(mEdgeSize)
+                .setSensitivity(mSensitivity)
+                .setScrollThreshold(mScrollThreshold)
+                .setScrimColor(mScrimColor)
+                .setShadow(mShadowLeft, SwipeBackLayout.EDGE_LEFT)
+                .setShadow(mShadowRight, SwipeBackLayout.EDGE_RIGHT)
+                .setShadow(mShadowBottom, SwipeBackLayout.EDGE_BOTTOM);
+    }
+
+    /**
+     * Apply this config to a layout.
+     */
+    void applyTo(SwipeBackLayout layout) {
+        if (mEdgeSize > 0) {
+            layout.setEdgeSize(mEdgeSize);
+        }
+        layout.setEdgeTrackingEnabled(mEdgeFlags);
+        if (mSensitivity != DEFAULT_SENSITIVITY) {
+            layout.setSensitivity(layout.getContext(), mSensitivity);
+        }
+        layout.setScrollThresHold(mScrollThreshold);
+        layout.setScrimColor(mScrimColor);
+        final Resources res = layout.getResources();
+        layout.setShadow(newShadow(mShadowLeft, res), SwipeBackLayout.EDGE_LEFT);
+        layout.setShadow(newShadow(mShadowRight, res), SwipeBackLayout.EDGE_RIGHT);
+        layout.setShadow(newShadow(mShadowBottom, res), SwipeBackLayout.EDGE_BOTTOM);
+    }
+
+    /**
+     * Drawables hold per view state, each layout gets its own instance,
+     * sharing the image data of the config's.
+     */
+    private static Drawable newShadow(Drawable shadow, Resources res) {
+        final Drawable.ConstantState state = shadow.getConstantState();
+        return state != null ? state.newDrawable(res) : shadow;
+    }
+
+    public int getEdgeFlags() {
+        return mEdgeFlags;
+    }
+
+    /**
+     * @return Edge size in pixels, or -1 for the default of the drag helper
+     */
+    public int getEdgeSize() {
+        return mEdgeSize;
+    }
+
+    public float getSensitivity() {
+        return mSensitivity;
+    }
+
+    public float getScrollThreshold() {
+        return mScrollThreshold;
+    }
+
+    public int getScrimColor() {
+        return mScrimColor;
+    }
+
+    /**
+     * Builds {@link SwipeBackConfig} instances. Shadows default to the ones
+     * of the library.
+     */
+    public static final class Builder {
+        private int mEdgeFlags = SwipeBackLayout.EDGE_LEFT;
+
+        private int mEdgeSize = -1;
+
+        private float mSensitivity = DEFAULT_SENSITIVITY;
+
+        private float mScrollThreshold = DEFAULT_SCROLL_THRESHOLD;
+
+        private int mScrimColor = DEFAULT_SCRIM_COLOR;
+
+        private Drawable mShadowLeft;
+
+        private Drawable mShadowRight;
+
+        private Drawable mShadowBottom;
+
+        /**
+         * @param edgeFlags Combination of edge flags describing the edges to
+         *                  track
+         * @see SwipeBackLayout#setEdgeTrackingEnabled(int)
+         */
+        public Builder setEdgeFlags(int edgeFlags) {
+            mEdgeFlags = edgeFlags;
+            return this;
+        }
+
+        /**
+         * @param size Edge size in pixels, or -1 for the default
+         * @see SwipeBackLayout#setEdgeSize(int)
+         */
+        public Builder setEdgeSize(int size) {
+            mEdgeSize = size;
+            return this;
+        }
+
+        /**
+         * @param sensitivity value between 0 and 1
+         * @see SwipeBackLayout#setSensitivity(Context, float)
+         */
+        public Builder setSensitivity(float sensitivity) {
+            mSensitivity = sensitivity;
+            return this;
+        }
+
+        /**
+         * @param threshold value between 0 and 1.0, exclusive
+         * @see SwipeBackLayout#setScrollThresHold(float)
+         */
+        public Builder setScrollThreshold(float threshold) {
+            if (threshold >= 1.0f || threshold <= 0) {
+                throw new IllegalArgumentException("Threshold value should be between 0 and 1.0");
+            }
+            mScrollThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * @param color Color to use in 0xAARRGGBB format.
+         * @see SwipeBackLayout#setScrimColor(int)
+         */
+        public Builder setScrimColor(int color) {
+            mScrimColor = color;
+            return this;
+        }
+
+        /**
+         * @param shadow   Drawable to use
+         * @param edgeFlag Edge to set the shadow of
+         * @see SwipeBackLayout#setShadow(Drawable, int)
+         */
+        public Builder setShadow(Drawable shadow, int edgeFlag) {
+            if ((edgeFlag & SwipeBackLayout.EDGE_LEFT) != 0) {
+                mShadowLeft = shadow;
+            } else if ((edgeFlag & SwipeBackLayout.EDGE_RIGHT) != 0) {
+                mShadowRight = shadow;
+            } else if ((edgeFlag & SwipeBackLayout.EDGE_BOTTOM) != 0) {
+                mShadowBottom = shadow;
+            }
+            return this;
+        }
+
+        /**
+         * @param context Context to load the default shadows with, if any is
+         *                missing
+         * @return a new config
+         */
+        public SwipeBackConfig build(Context context) {
+            if (mShadowLeft == null) {
+                mShadowLeft = ContextCompat.getDrawable(context, R.drawable.shadow_left);
+            }
+            if (mShadowRight == null) {
+                mShadowRight = ContextCompat.getDrawable(context, R.drawable.shadow_right);
+            }
+            if (mShadowBottom == null) {
+                mShadowBottom = ContextCompat.getDrawable(context, R.drawable.shadow_bottom);
+            }
+            return build();
+        }
+
+        /**
+         * @return a new config
+         * @throws IllegalStateException if a shadow is missing, use
+         *                               {@link #build(Context)} for the
+         *                               default ones
+         */
+        public SwipeBackConfig build() {
+            if (mShadowLeft == null || mShadowRight == null || mShadowBottom == null) {
+                throw new IllegalStateException("Shadows must be set for all edges");
+            }
+            return new SwipeBackConfig(this);
+        }
+    }
+}
@@ -1,18 +1,33 @@
 package me.imid.swipebacklayout.lib;
 
+import android.animation.Animator;
+import android.annotation.TargetApi;
 import android.app.Activity;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Point;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.v4.view.MotionEventCompat;
 import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
+import android.view.PixelCopy;
+import android.view.SurfaceView;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
+import android.view.WindowManager;
 import android.widget.FrameLayout;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,8 +41,6 @@ public class SwipeBackLayout extends FrameLayout {
 
     private static final int DEFAULT_SCRIM_COLOR = 0x99000000;
 
-    private static final int FULL_ALPHA = 255;
-
     /**
      * Edge flag indicating that the left edge should be affected.
      */
@@ -73,7 +86,20 @@ public class SwipeBackLayout extends FrameLayout {
 
     private static final int OVERSCROLL_DISTANCE = 10;
 
-    private static final int[] EDGE_FLAGS = {
+    /**
+     * How long the content has to rest in place before the activity is made
+     * opaque again, so quick repeated swipes don't convert back and forth.
+     */
+    private static final long RESTORE_OPAQUE_DELAY = 500; // ms
+
+    // Delay before a stale content snapshot is taken again
+    private static final long SNAPSHOT_REFRESH_DELAY = 500; // ms
+
+    // How deep into the content to look for a view hiding the window
+    // background
+    private static final int MAX_OPAQUE_COVER_DEPTH = 4;
+
+    static final int[] EDGE_FLAGS = {
             EDGE_LEFT, EDGE_RIGHT, EDGE_BOTTOM, EDGE_ALL
     };
 
@@ -85,8 +111,17 @@ public class SwipeBackLayout extends FrameLayout {
      */
     private float mScrollThreshold = DEFAULT_SCROLL_THRESHOLD;
 
+    private ReleasePolicy mReleasePolicy = new ProjectionReleasePolicy();
+
     private Activity mActivity;
 
+    private final Runnable mRestoreOpaqueRunnable = new Runnable() {
+        @Override
+        public void run() {
+            restoreOpaque();
+        }
+    };
+
     private boolean mEnable = true;
 
     private View mContentView;
@@ -110,19 +145,131 @@ public class SwipeBackLayout extends FrameLayout {
 
     private Drawable mShadowBottom;
 
+    // Fills the area uncovered by the content, moved and faded as a whole
+    private final View mScrimView;
+
+    // Shadow of each edge, laid out next to the content at rest and moved
+    // and faded with it
+    private final View mShadowLeftView;
+
+    private final View mShadowRightView;
+
+    private final View mShadowBottomView;
+
     private float mScrimOpacity;
 
     private int mScrimColor = DEFAULT_SCRIM_COLOR;
 
     private boolean mInLayout;
 
-    private Rect mTmpRect = new Rect();
-
     /**
      * Edge being dragged
      */
     private int mTrackingEdge;
 
+    /**
+     * True when the current touch stream went down outside of every tracked
+     * edge, it will be ignored until the next ACTION_DOWN.
+     */
+    private boolean mRejectedStream;
+
+    private boolean mCatchDuringSettle;
+
+    private boolean mMoveByTranslation;
+
+    private boolean mRenderThreadSettle;
+
+    // Render thread animators moving the content and its decorations for the
+    // settle in progress
+    private final List<Animator> mSettleAnimators = new ArrayList<>();
+
+    private boolean mContentLayerEnabled = true;
+
+    // Largest content area, in pixels, worth a hardware layer
+    private int mContentLayerMaxArea;
+
+    // Whether the content is on a hardware layer set up by this layout
+    private boolean mContentLayerPromoted;
+
+    // Whether the content contains a SurfaceView, null until checked
+    private Boolean mContentHasSurfaceView;
+
+    // Window background put on the content by attachToActivity, null if none
+    private Drawable mWindowBackground;
+
+    private boolean mLazyAttach;
+
+    // Stands in for this layout until a lazy attach is completed
+    private EdgeSentinel mEdgeSentinel;
+
+    private Runnable mOnAttached;
+
+    // Whether an edge was touched in the current stream without a capture yet
+    private boolean mEdgeTouchPending;
+
+    private int mAvoidedConversionCount;
+
+    private static int sNextSnapshotKey;
+
+    // Key of this layout's content snapshot in the SnapshotCache
+    private final int mSnapshotKey = sNextSnapshotKey++;
+
+    private boolean mSnapshotUnderlay;
+
+    // Layout of the activity below, whose snapshot is drawn under the content
+    private WeakReference<SwipeBackLayout> mPreviousLayout;
+
+    // Snapshot drawn under the content for the current swipe, if any
+    private Bitmap mUnderlay;
+
+    // Drops the content snapshot whenever this layout draws again
+    private ViewTreeObserver.OnDrawListener mSnapshotInvalidator;
+
+    // Whether the next activity wants snapshots of this layout's content
+    private boolean mSnapshotRequested;
+
+    private boolean mSnapshotRefreshScheduled;
+
+    // Bumped whenever something below this layout is invalidated or requests
+    // a layout, drawn or not
+    private int mContentGeneration;
+
+    // Generation of the content in the cached snapshot
+    private int mSnapshotGeneration;
+
+    // A window copy is on its way
+    private boolean mSnapshotCopyPending;
+
+    private final MessageQueue.IdleHandler mSnapshotIdleRefresh = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            mSnapshotRefreshScheduled = false;
+            if (mSnapshotRequested && !mSnapshotCopyPending && getCachedSnapshot() == null) {
+                takeContentSnapshot();
+            }
+            return false;
+        }
+    };
+
+    private final Runnable mSnapshotRefresh = new Runnable() {
+        @Override
+        public void run() {
+            Looper.myQueue().addIdleHandler(mSnapshotIdleRefresh);
+        }
+    };
+
+    private float mParallaxFactor;
+
+    // Offset of the previous content at the current scroll percent
+    private float mParallaxX;
+
+    private float mParallaxY;
+
+    /**
+     * Applies drag positions and advances settling once per frame.
+     */
+    private final FrameScheduler mFrameScheduler;
+
     public SwipeBackLayout(Context context) {
         this(context, null);
     }
@@ -132,28 +279,32 @@ public class SwipeBackLayout extends FrameLayout {
     }
 
     public SwipeBackLayout(Context context, AttributeSet attrs, int defStyle) {
+        this(context, attrs, defStyle, null);
+    }
+
+    private SwipeBackLayout(Context context, AttributeSet attrs, int defStyle,
+                            SwipeBackConfig config) {
         super(context, attrs);
         mDragHelper = ViewDragHelper.create(this, new ViewDragCallback());
+        mDragHelper.setDeferPositionUpdates(true);
+        // Behind the content, the shadows over the scrim
+        mScrimView = addDecorationView(context);
+        mScrimView.setBackgroundColor(mScrimColor);
+        mShadowLeftView = addDecorationView(context);
+        mShadowRightView = addDecorationView(context);
+        mShadowBottomView = addDecorationView(context);
+        mFrameScheduler = new FrameScheduler(this, new FrameScheduler.Callback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                onFrame(frameTimeNanos);
+            }
+        });
 
-        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.SwipeBackLayout, defStyle,
-                R.style.SwipeBackLayout);
-
-        int edgeSize = a.getDimensionPixelSize(R.styleable.SwipeBackLayout_edge_size, -1);
-        if (edgeSize > 0)
-            setEdgeSize(edgeSize);
-        int mode = EDGE_FLAGS[a.getInt(R.styleable.SwipeBackLayout_edge_flag, 0)];
-        setEdgeTrackingEnabled(mode);
-
-        int shadowLeft = a.getResourceId(R.styleable.SwipeBackLayout_shadow_left,
-                R.drawable.shadow_left);
-        int shadowRight = a.getResourceId(R.styleable.SwipeBackLayout_shadow_right,
-                R.drawable.shadow_right);
-        int shadowBottom = a.getResourceId(R.styleable.SwipeBackLayout_shadow_bottom,
-                R.drawable.shadow_bottom);
-        setShadow(shadowLeft, EDGE_LEFT);
-        setShadow(shadowRight, EDGE_RIGHT);
-        setShadow(shadowBottom, EDGE_BOTTOM);
-        a.recycle();
+        if (config == null) {
+            config = SwipeBackConfig.fromAttributes(context, attrs, defStyle);
+        }
+        config.applyTo(this);
+        mContentLayerMaxArea = getDisplayArea(context);
         final float density = getResources().getDisplayMetrics().density;
         final float minVel = MIN_FLING_VELOCITY * density;
         mDragHelper.setMinVelocity(minVel);
@@ -161,14 +312,613 @@ public class SwipeBackLayout extends FrameLayout {
     }
 
     /**
-     * Sets the sensitivity of the NavigationLayout.
+     * Create a layout from a config, without resolving any attribute.
+     *
+     * @param context Context the layout runs in
+     * @param config  Settings to apply, usually shared across activities
+     * @return a new layout
+     * @see SwipeBackConfig#getDefault(Context)
+     */
+    public static SwipeBackLayout create(Context context, SwipeBackConfig config) {
+        return new SwipeBackLayout(context, null, 0, config);
+    }
+
+    /**
+     * Sets the sensitivity of the NavigationLayout.
+     *
+     * @param context     The application context.
+     * @param sensitivity value between 0 and 1, the final value for touchSlop =
+     *                    ViewConfiguration.getScaledTouchSlop * (1 / s);
+     */
+    public void setSensitivity(Context context, float sensitivity) {
+        mDragHelper.setSensitivity(context, sensitivity);
+    }
+
+    /**
+     * Set the strategy used to estimate the release velocity of a swipe.
+     *
+     * @param strategy One of {@link VelocityEstimator#STRATEGY_LSQ2} or
+     *                 {@link VelocityEstimator#STRATEGY_IMPULSE}
+     */
+    public void setVelocityStrategy(int strategy) {
+        mDragHelper.setVelocityStrategy(strategy);
+    }
+
+    /**
+     * Settle the content with a critically damped spring instead of a fixed
+     * curve once the finger is lifted. The spring starts with the release
+     * velocity, so a fling carries straight into the animation. Off by
+     * default.
+     *
+     * @param enabled true to settle with a spring
+     */
+    public void setSpringSettleEnabled(boolean enabled) {
+        mDragHelper.setSpringSettleEnabled(enabled);
+    }
+
+    /**
+     * Allow a touch anywhere on the content to catch it while it is settling
+     * after a swipe, instead of only touches on the tracked edges. The content
+     * stops where it is and the new drag starts with its momentum. Off by
+     * default.
+     *
+     * @param enabled true to catch the settling content
+     */
+    public void setCatchDuringSettleEnabled(boolean enabled) {
+        mCatchDuringSettle = enabled;
+    }
+
+    /**
+     * Draw a snapshot of the previous swipe back activity under the content
+     * while swiping, instead of making the window translucent so the
+     * activity itself shows through. The snapshot is taken when the main
+     * thread is idle after this activity starts, and again some time after
+     * the previous content has changed, never on the touch path. The window
+     * is made opaque shortly after start. Without a previous layout or an up
+     * to date snapshot, the swipe falls back to window translucency. Requires
+     * Android 4.1, off by default.
+     *
+     * @param enabled true to draw a snapshot underlay
+     * @see #setPreviousLayout(SwipeBackLayout)
+     */
+    public void setSnapshotUnderlayEnabled(boolean enabled) {
+        mSnapshotUnderlay = enabled;
+    }
+
+    /**
+     * Set the layout of the activity right below this one. Only a weak
+     * reference is kept.
+     *
+     * @param previous Layout of the previous activity, or null if it is not a
+     *                 swipe back activity
+     */
+    public void setPreviousLayout(SwipeBackLayout previous) {
+        mPreviousLayout = previous != null ? new WeakReference<>(previous) : null;
+        if (mSnapshotUnderlay && previous != null
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            // What is behind is about to be captured, the window no longer
+            // needs to be translucent.
+            previous.requestContentSnapshot();
+            removeCallbacks(mRestoreOpaqueRunnable);
+            postDelayed(mRestoreOpaqueRunnable, RESTORE_OPAQUE_DELAY);
+        }
+    }
+
+    /**
+     * Move the previous activity along with the swipe, starting offset by the
+     * given fraction of its size and reaching its resting place when the swipe
+     * completes. Only the translation of the previous content changes, so
+     * nothing below is laid out or redrawn. Takes effect for previous
+     * activities set with {@link #setPreviousLayout(SwipeBackLayout)}.
+     *
+     * @param factor Fraction between 0, no parallax, and 1
+     */
+    public void setParallaxFactor(float factor) {
+        if (factor < 0 || factor > 1) {
+            throw new IllegalArgumentException("Parallax factor should be between 0 and 1.0");
+        }
+        mParallaxFactor = factor;
+    }
+
+    /**
+     * @return true if the current swipe draws a snapshot of the previous
+     * activity, so the window can stay opaque
+     */
+    public boolean isDrawingSnapshotUnderlay() {
+        return mUnderlay != null;
+    }
+
+    /**
+     * Keep an up to date snapshot of the content of this layout in the cache.
+     * Snapshots are taken when the main thread is idle.
+     */
+    void requestContentSnapshot() {
+        mSnapshotRequested = true;
+        scheduleSnapshotRefresh(0);
+    }
+
+    private void scheduleSnapshotRefresh(long delay) {
+        if (!mSnapshotRefreshScheduled) {
+            mSnapshotRefreshScheduled = true;
+            postDelayed(mSnapshotRefresh, delay);
+        }
+    }
+
+    /**
+     * @return the up to date snapshot of the content of this layout, or null
+     * if there is none at the moment; this never takes one
+     */
+    Bitmap peekContentSnapshot() {
+        if (!mSnapshotRequested) {
+            return null;
+        }
+        final Bitmap snapshot = getCachedSnapshot();
+        if (snapshot == null) {
+            // Evicted or stale, have one ready for the next swipe.
+            scheduleSnapshotRefresh(0);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the cached snapshot if the content has not changed since it was
+     * taken, or null; a stale one is dropped
+     */
+    private Bitmap getCachedSnapshot() {
+        final SnapshotCache cache = SnapshotCache.getInstance(getContext());
+        final Bitmap snapshot = cache.get(mSnapshotKey);
+        if (snapshot != null && mSnapshotGeneration != mContentGeneration) {
+            // Changed while this activity was stopped, without drawing
+            cache.remove(mSnapshotKey);
+            return null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Take a snapshot of the content. From Android 8.0 on the content may draw
+     * hardware bitmaps, which a software canvas refuses, so the window is
+     * copied instead. Whenever that fails no snapshot is cached, and swipes
+     * fall back to a translucent window.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void takeContentSnapshot() {
+        final View content = mContentView;
+        if (content == null || content.getWidth() == 0 || content.getHeight() == 0) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            copyContentSnapshot(content);
+            return;
+        }
+        final Bitmap snapshot;
+        try {
+            snapshot = Bitmap.createBitmap(content.getWidth(), content.getHeight(),
+                    Bitmap.Config.ARGB_8888);
+        } catch (OutOfMemoryError e) {
+            return;
+        }
+        try {
+            content.draw(new Canvas(snapshot));
+        } catch (RuntimeException e) {
+            snapshot.recycle();
+            return;
+        }
+        putContentSnapshot(snapshot, mContentGeneration);
+    }
+
+    /**
+     * Copy the area of the window showing the content. Only works while the
+     * window is on screen, which it still is when the next activity asks for
+     * a snapshot as it starts.
+     */
+    @TargetApi(Build.VERSION_CODES.O)
+    private void copyContentSnapshot(View content) {
+        final Handler handler = getHandler();
+        if (mActivity == null || handler == null) {
+            return;
+        }
+        final int[] location = new int[2];
+        content.getLocationInWindow(location);
+        final Rect source = new Rect(location[0], location[1],
+                location[0] + content.getWidth(), location[1] + content.getHeight());
+        final Bitmap copy;
+        try {
+            copy = Bitmap.createBitmap(content.getWidth(), content.getHeight(),
+                    Bitmap.Config.ARGB_8888);
+        } catch (OutOfMemoryError e) {
+            return;
+        }
+        final int generation = mContentGeneration;
+        try {
+            PixelCopy.request(mActivity.getWindow(), source, copy,
+                    new PixelCopy.OnPixelCopyFinishedListener() {
+                        @Override
+                        public void onPixelCopyFinished(int result) {
+                            mSnapshotCopyPending = false;
+                            if (result == PixelCopy.SUCCESS && mSnapshotRequested
+                                    && generation == mContentGeneration) {
+                                putContentSnapshot(copy, generation);
+                            } else {
+                                copy.recycle();
+                            }
+                        }
+                    }, handler);
+        } catch (RuntimeException e) {
+            // The window has no surface any more.
+            copy.recycle();
+            return;
+        }
+        mSnapshotCopyPending = true;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void putContentSnapshot(Bitmap snapshot, int generation) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                && snapshot.getConfig() != Bitmap.Config.HARDWARE) {
+            snapshot = toHardwareBitmap(snapshot);
+        }
+        SnapshotCache.getInstance(getContext()).put(mSnapshotKey, snapshot);
+        mSnapshotGeneration = generation;
+        if (mSnapshotInvalidator == null) {
+            mSnapshotInvalidator = createSnapshotInvalidator();
+            getViewTreeObserver().addOnDrawListener(mSnapshotInvalidator);
+        }
+    }
+
+    @Override
+    public ViewParent invalidateChildInParent(int[] location, Rect dirty) {
+        mContentGeneration++;
+        return super.invalidateChildInParent(location, dirty);
+    }
+
+    @Override
+    public void onDescendantInvalidated(View child, View target) {
+        // Hardware accelerated invalidations go through here from Android 8.0
+        mContentGeneration++;
+        super.onDescendantInvalidated(child, target);
+    }
+
+    /**
+     * Move a snapshot to graphics memory, off the Java heap.
+     */
+    @TargetApi(Build.VERSION_CODES.O)
+    private static Bitmap toHardwareBitmap(Bitmap snapshot) {
+        final Bitmap hardware = snapshot.copy(Bitmap.Config.HARDWARE, false);
+        if (hardware == null) {
+            return snapshot;
+        }
+        snapshot.recycle();
+        return hardware;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private ViewTreeObserver.OnDrawListener createSnapshotInvalidator() {
+        return new ViewTreeObserver.OnDrawListener() {
+            @Override
+            public void onDraw() {
+                // Anything drawn may have changed the content. Take it again
+                // later, a burst of draws such as a ripple costs one snapshot.
+                SnapshotCache.getInstance(getContext()).remove(mSnapshotKey);
+                scheduleSnapshotRefresh(SNAPSHOT_REFRESH_DELAY);
+            }
+        };
+    }
+
+    /**
+     * Offset the previous content for the current scroll percent, or put it
+     * back in place once the swipe is over.
+     */
+    private void updateParallax(boolean reset) {
+        if (mParallaxFactor == 0 || mPreviousLayout == null) {
+            return;
+        }
+        final SwipeBackLayout previous = mPreviousLayout.get();
+        if (previous == null || previous.mContentView == null) {
+            return;
+        }
+        final View content = previous.mContentView;
+        final float remaining = reset ? 0 : mParallaxFactor * (1 - mScrollPercent);
+        mParallaxX = 0;
+        mParallaxY = 0;
+        if ((mTrackingEdge & EDGE_LEFT) != 0) {
+            mParallaxX = -remaining * content.getWidth();
+        } else if ((mTrackingEdge & EDGE_RIGHT) != 0) {
+            mParallaxX = remaining * content.getWidth();
+        } else if ((mTrackingEdge & EDGE_BOTTOM) != 0) {
+            mParallaxY = remaining * content.getHeight();
+        }
+        if (mUnderlay == null) {
+            content.setTranslationX(mParallaxX);
+            content.setTranslationY(mParallaxY);
+        }
+    }
+
+    /**
+     * Put the content of the previous activity back in place, however the
+     * swipe ended. Done even when an underlay stands in for it, the content
+     * may have been moved before the underlay was ready.
+     */
+    private void resetPreviousContent() {
+        mParallaxX = 0;
+        mParallaxY = 0;
+        final SwipeBackLayout previous = mPreviousLayout != null ? mPreviousLayout.get() : null;
+        if (previous == null || previous.mContentView == null) {
+            return;
+        }
+        previous.mContentView.setTranslationX(0);
+        previous.mContentView.setTranslationY(0);
+    }
+
+    private void prepareUnderlay() {
+        final SwipeBackLayout previous = mPreviousLayout != null ? mPreviousLayout.get() : null;
+        mUnderlay = mSnapshotUnderlay && previous != null ? previous.peekContentSnapshot() : null;
+    }
+
+    /**
+     * Move the content through its translation instead of its layout position
+     * while swiping. The layout bounds of the content then never change, so a
+     * layout requested by the content mid-swipe can't fight with the swipe,
+     * and the movement is a property update on the render thread. Call while
+     * no swipe is in progress. Off by default.
+     *
+     * @param enabled true to move the content by translation
+     */
+    public void setMoveByTranslation(boolean enabled) {
+        if (mMoveByTranslation == enabled) {
+            return;
+        }
+        mMoveByTranslation = enabled;
+        mDragHelper.setMoveByTranslation(enabled);
+        if (mContentView != null) {
+            mContentView.setTranslationX(enabled ? mContentLeft : 0);
+            mContentView.setTranslationY(enabled ? mContentTop : 0);
+        }
+        requestLayout();
+    }
+
+    /**
+     * Configure drawing the content through a hardware layer while it moves.
+     * The content is then redrawn once when an edge is touched, and each frame
+     * of the swipe only composites the layer. The layer is dropped when the
+     * content is at rest. Content larger than the given area, or containing a
+     * {@link SurfaceView}, which can't be drawn into a layer, is never
+     * promoted. Enabled by default, limited to the display area.
+     *
+     * @param enabled true to use a hardware layer during swipes
+     * @param maxArea Largest content area in pixels to put on a layer
+     */
+    public void setContentLayerPolicy(boolean enabled, int maxArea) {
+        mContentLayerEnabled = enabled;
+        mContentLayerMaxArea = maxArea;
+        if (!enabled) {
+            dropContentLayer();
+        }
+    }
+
+    /**
+     * @return Area of the whole display in pixels, system bars included, so
+     * that content drawn behind them still fits the default layer limit
+     */
+    private static int getDisplayArea(Context context) {
+        final WindowManager windowManager =
+                (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 && windowManager != null) {
+            final Point size = new Point();
+            windowManager.getDefaultDisplay().getRealSize(size);
+            return size.x * size.y;
+        }
+        // The display metrics leave the system bars out, allow them an eighth
+        // of the screen.
+        final int width = context.getResources().getDisplayMetrics().widthPixels;
+        final int height = context.getResources().getDisplayMetrics().heightPixels;
+        return width * height + width * height / 8;
+    }
+
+    /**
+     * Put the content on a hardware layer, if the policy allows it and the
+     * content has no layer of its own.
+     */
+    private void promoteContentLayer() {
+        final View content = mContentView;
+        if (!mContentLayerEnabled || mContentLayerPromoted || content == null
+                || !isHardwareAccelerated() || content.getLayerType() != LAYER_TYPE_NONE
+                || content.getWidth() * content.getHeight() > mContentLayerMaxArea) {
+            return;
+        }
+        if (mContentHasSurfaceView == null) {
+            mContentHasSurfaceView = containsSurfaceView(content);
+        }
+        if (mContentHasSurfaceView) {
+            return;
+        }
+        mContentLayerPromoted = true;
+        content.setLayerType(LAYER_TYPE_HARDWARE, null);
+        if (content.getWindowToken() != null) {
+            // Render it now, before the swipe moves anything.
+            content.buildLayer();
+        }
+    }
+
+    private void dropContentLayer() {
+        if (!mContentLayerPromoted) {
+            return;
+        }
+        mContentLayerPromoted = false;
+        mContentView.setLayerType(LAYER_TYPE_NONE, null);
+    }
+
+    /**
+     * Drop the window background from the content while an opaque view of the
+     * app covers all of it, and put it back once that is no longer the case.
+     * The background moves with the content, so a covered one is never seen,
+     * at rest or during a swipe, and is only overdraw.
+     */
+    private void updateWindowBackground() {
+        if (mWindowBackground == null) {
+            return;
+        }
+        final View content = mContentView;
+        final Drawable background = hasOpaqueCover(content, 0) ? null : mWindowBackground;
+        if (content.getBackground() != background) {
+            // Within layout, the layout request this makes is dropped. The
+            // content keeps its padding either way, nothing needs laying out.
+            ViewCompat.setBackground(content, background);
+        }
+    }
+
+    /**
+     * @return true if a visible, untransformed and opaque descendant of the
+     * view fills it, at most a few levels down
+     */
+    private static boolean hasOpaqueCover(View view, int depth) {
+        if (!(view instanceof ViewGroup) || depth >= MAX_OPAQUE_COVER_DEPTH
+                || view.getScrollX() != 0 || view.getScrollY() != 0
+                || view.getPaddingLeft() != 0 || view.getPaddingTop() != 0
+                || view.getPaddingRight() != 0 || view.getPaddingBottom() != 0) {
+            return false;
+        }
+        final ViewGroup group = (ViewGroup) view;
+        for (int i = group.getChildCount() - 1; i >= 0; i--) {
+            final View child = group.getChildAt(i);
+            if (child.getVisibility() != VISIBLE || child.getAlpha() < 1
+                    || child.getLeft() != 0 || child.getTop() != 0
+                    || child.getWidth() != group.getWidth()
+                    || child.getHeight() != group.getHeight()
+                    || child.getTranslationX() != 0 || child.getTranslationY() != 0
+                    || child.getScaleX() < 1 || child.getScaleY() < 1
+                    || child.getRotation() != 0) {
+                continue;
+            }
+            if (child.isOpaque() || hasOpaqueCover(child, depth + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsSurfaceView(View view) {
+        if (view instanceof SurfaceView) {
+            return true;
+        }
+        if (view instanceof ViewGroup) {
+            final ViewGroup group = (ViewGroup) view;
+            for (int i = group.getChildCount() - 1; i >= 0; i--) {
+                if (containsSurfaceView(group.getChildAt(i))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Run settle animations on the render thread where the platform allows
+     * it, so the content, its scrim and its shadow keep moving smoothly while
+     * the UI thread is busy, for instance with the previous activity
+     * resuming. Progress is still
+     * reported to listeners from the UI thread, as frames get through. Only
+     * takes effect when moving by translation, and falls back to animating on
+     * the UI thread where unsupported. Off by default.
+     *
+     * @param enabled true to settle on the render thread when possible
+     * @see #setMoveByTranslation(boolean)
+     */
+    public void setRenderThreadSettleEnabled(boolean enabled) {
+        mRenderThreadSettle = enabled;
+    }
+
+    /**
+     * Hand the settle that just started over to render thread animators
+     * running the same curve, if possible. The scrim and the shadow move and
+     * fade along with the content; both are linear in its offset, so the same
+     * curve applies. The helper keeps computing the settle to report progress.
+     */
+    private void startRenderThreadSettle(int finalLeft, int finalTop) {
+        if (!mRenderThreadSettle || !mMoveByTranslation) {
+            return;
+        }
+        final int duration = mDragHelper.getSettleDuration();
+        if (duration <= 0) {
+            return;
+        }
+        final boolean vertical = (mTrackingEdge & EDGE_BOTTOM) != 0;
+        final Animator animator = RenderThreadAnimator.create(mContentView, vertical,
+                vertical ? finalTop : finalLeft, duration, ViewDragHelper.sInterpolator);
+        if (animator == null) {
+            return;
+        }
+        mDragHelper.detachSettleFromView();
+        mSettleAnimators.add(animator);
+        final float finalOpacity = Math.max(0, 1 - getScrollPercent(finalLeft, finalTop));
+        if ((mScrimColor >>> 24) != 0) {
+            startDecorationSettle(mScrimView, vertical,
+                    getScrimTranslation(mContentLeft, mContentTop),
+                    getScrimTranslation(finalLeft, finalTop), finalOpacity, duration);
+        }
+        final View shadow = getShadowView(mTrackingEdge);
+        if (shadow != null) {
+            startDecorationSettle(shadow, vertical, vertical ? mContentTop : mContentLeft,
+                    vertical ? finalTop : finalLeft, finalOpacity, duration);
+        }
+        for (int i = 0; i < mSettleAnimators.size(); i++) {
+            mSettleAnimators.get(i).start();
+        }
+    }
+
+    /**
+     * Set up a decoration view to follow a render thread settle, from where
+     * it is now. The view is hidden for the settle if it can't be animated,
+     * rather than left to lag behind the content.
+     */
+    private void startDecorationSettle(View view, boolean vertical, float translation,
+                                       float finalTranslation, float finalOpacity,
+                                       long duration) {
+        final Animator move = RenderThreadAnimator.create(view, vertical, finalTranslation,
+                duration, ViewDragHelper.sInterpolator);
+        final Animator fade = RenderThreadAnimator.createAlpha(view, finalOpacity, duration,
+                ViewDragHelper.sInterpolator);
+        if (move == null || fade == null) {
+            view.setVisibility(INVISIBLE);
+            return;
+        }
+        if (vertical) {
+            view.setTranslationY(translation);
+        } else {
+            view.setTranslationX(translation);
+        }
+        view.setAlpha(mScrimOpacity);
+        view.setVisibility(VISIBLE);
+        mSettleAnimators.add(move);
+        mSettleAnimators.add(fade);
+    }
+
+    private void cancelRenderThreadSettle() {
+        if (mSettleAnimators.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < mSettleAnimators.size(); i++) {
+            mSettleAnimators.get(i).cancel();
+        }
+        mSettleAnimators.clear();
+        // Wherever the animators left them, the content and its decorations
+        // belong where the helper last reported it.
+        mContentView.setTranslationX(mContentLeft);
+        mContentView.setTranslationY(mContentTop);
+        updateScrim();
+        updateShadow();
+    }
+
+    /**
+     * Enable short-horizon motion prediction while dragging. The content is
+     * then placed where the finger is expected to be when the frame is shown,
+     * rather than where the last touch event reported it, which hides part of
+     * the input latency. Off by default.
      *
-     * @param context     The application context.
-     * @param sensitivity value between 0 and 1, the final value for touchSlop =
-     *                    ViewConfiguration.getScaledTouchSlop * (1 / s);
+     * @param enabled true to extrapolate the dragged content position
      */
-    public void setSensitivity(Context context, float sensitivity) {
-        mDragHelper.setSensitivity(context, sensitivity);
+    public void setMotionPredictionEnabled(boolean enabled) {
+        mDragHelper.setMotionPredictionEnabled(enabled);
     }
 
     /**
@@ -180,6 +930,13 @@ public class SwipeBackLayout extends FrameLayout {
         mContentView = view;
     }
 
+    /**
+     * @return The view moved by user gesture
+     */
+    public View getContentView() {
+        return mContentView;
+    }
+
     public void setEnableGesture(boolean enable) {
         mEnable = enable;
     }
@@ -211,7 +968,7 @@ public class SwipeBackLayout extends FrameLayout {
      */
     public void setScrimColor(int color) {
         mScrimColor = color;
-        invalidate();
+        mScrimView.setBackgroundColor(color);
     }
 
     /**
@@ -293,6 +1050,57 @@ public class SwipeBackLayout extends FrameLayout {
         void onContentViewSwipedBack();
     }
 
+    public interface EdgeTouchPendingListener extends SwipeListener {
+        /**
+         * Invoke when an edge is touched, before it is known whether the touch
+         * becomes a swipe. {@link #onEdgeTouch(int)} follows only once the
+         * swipe is confirmed.
+         *
+         * @param edgeFlag edge flag describing the edge being touched
+         * @see #EDGE_LEFT
+         * @see #EDGE_RIGHT
+         * @see #EDGE_BOTTOM
+         */
+        void onEdgeTouchPending(int edgeFlag);
+    }
+
+    /**
+     * @return Number of edge touches that never became a swipe, each of which
+     * used to cost a window translucency conversion
+     */
+    public int getAvoidedConversionCount() {
+        return mAvoidedConversionCount;
+    }
+
+    /**
+     * Decides whether a released swipe finishes the activity or returns.
+     *
+     * @see ProjectionReleasePolicy
+     */
+    public interface ReleasePolicy {
+        /**
+         * @param scrollPercent Progress of the swipe at release, from 0 to 1
+         * @param velocity      Release velocity along the swipe in pixels per
+         *                      second, positive towards finishing, including
+         *                      releases below the minimum fling velocity;
+         *                      zero when the touch stream was cancelled
+         * @param range         Distance in pixels of a complete swipe
+         * @param threshold     Scroll threshold set on the layout
+         * @return true to finish the activity, false to return
+         */
+        boolean shouldFinish(float scrollPercent, float velocity, int range, float threshold);
+    }
+
+    /**
+     * Set the policy deciding the outcome of a released swipe.
+     *
+     * @param policy Policy to use, or null for the default
+     *               {@link ProjectionReleasePolicy}
+     */
+    public void setReleasePolicy(ReleasePolicy policy) {
+        mReleasePolicy = policy != null ? policy : new ProjectionReleasePolicy();
+    }
+
     /**
      * Set scroll threshold, we will close the activity, when scrollPercent over
      * this value
@@ -318,12 +1126,16 @@ public class SwipeBackLayout extends FrameLayout {
     public void setShadow(Drawable shadow, int edgeFlag) {
         if ((edgeFlag & EDGE_LEFT) != 0) {
             mShadowLeft = shadow;
+            ViewCompat.setBackground(mShadowLeftView, shadow);
         } else if ((edgeFlag & EDGE_RIGHT) != 0) {
             mShadowRight = shadow;
+            ViewCompat.setBackground(mShadowRightView, shadow);
         } else if ((edgeFlag & EDGE_BOTTOM) != 0) {
             mShadowBottom = shadow;
+            ViewCompat.setBackground(mShadowBottomView, shadow);
         }
-        invalidate();
+        // The shadow views are sized after the drawables.
+        requestLayout();
     }
 
     /**
@@ -343,6 +1155,8 @@ public class SwipeBackLayout extends FrameLayout {
      * Scroll out contentView and finish the activity
      */
     public void scrollToFinishActivity() {
+        completeLazyAttach();
+        prepareUnderlay();
         final int childWidth = mContentView.getWidth();
         final int childHeight = mContentView.getHeight();
 
@@ -358,127 +1172,598 @@ public class SwipeBackLayout extends FrameLayout {
             mTrackingEdge = EDGE_BOTTOM;
         }
 
-        mDragHelper.smoothSlideViewTo(mContentView, left, top);
-        invalidate();
+        cancelRenderThreadSettle();
+        if (mDragHelper.smoothSlideViewTo(mContentView, left, top)) {
+            startRenderThreadSettle(left, top);
+        }
+        mFrameScheduler.schedule();
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        final boolean handled = super.dispatchTouchEvent(event);
+        // Every event of the stream comes through here once, whoever ends up
+        // consuming it.
+        final int action = MotionEventCompat.getActionMasked(event);
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            endPendingEdgeTouch();
+        }
+        return handled;
     }
 
     @Override
-    public boolean onInterceptTouchEvent(MotionEvent event) {
-        if (!mEnable) {
-            return false;
+    public void requestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+        super.requestDisallowInterceptTouchEvent(disallowIntercept);
+        if (disallowIntercept) {
+            // A child took the stream and may scroll or fling for a while, no
+            // swipe can start from it any more.
+            endPendingEdgeTouch();
         }
-        try {
-            return mDragHelper.shouldInterceptTouchEvent(event);
-        } catch (ArrayIndexOutOfBoundsException e) {
-            // FIXME: handle exception
-            // issues #9
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent event) {
+        if (!mEnable || isTouchStreamRejected(event)) {
             return false;
         }
+        return mDragHelper.shouldInterceptTouchEvent(event);
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        if (!mEnable) {
+        if (!mEnable || isTouchStreamRejected(event)) {
             return false;
         }
         mDragHelper.processTouchEvent(event);
+        if (mDragHelper.hasPendingPosition()) {
+            mFrameScheduler.schedule();
+        }
         return true;
     }
 
+    /**
+     * Count an edge touch that ended without a swipe, and so without a window
+     * conversion.
+     */
+    private void endPendingEdgeTouch() {
+        if (!mEdgeTouchPending) {
+            return;
+        }
+        mEdgeTouchPending = false;
+        mAvoidedConversionCount++;
+        if (mDragHelper.getViewDragState() == STATE_IDLE) {
+            dropContentLayer();
+        }
+    }
+
+    /**
+     * Decide on ACTION_DOWN whether the new touch stream can ever start a
+     * swipe. Streams going down outside of the tracked edges are skipped
+     * entirely, so no velocity or pointer tracking is done for them.
+     */
+    private boolean isTouchStreamRejected(MotionEvent event) {
+        if (MotionEventCompat.getActionMasked(event) == MotionEvent.ACTION_DOWN) {
+            mRejectedStream = mDragHelper.getViewDragState() != STATE_SETTLING
+                    && !mDragHelper.isTrackedEdgeUnder((int) event.getX(), (int) event.getY());
+            if (mRejectedStream) {
+                // Drop whatever is left from the previous stream.
+                mDragHelper.cancel();
+            }
+        }
+        return mRejectedStream;
+    }
+
     @Override
     protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
         mInLayout = true;
-        if (mContentView != null)
-            mContentView.layout(mContentLeft, mContentTop,
-                    mContentLeft + mContentView.getMeasuredWidth(),
-                    mContentTop + mContentView.getMeasuredHeight());
+        // The hierarchy may have changed.
+        mContentHasSurfaceView = null;
+        final int width = right - left;
+        final int height = bottom - top;
+        mScrimView.layout(0, 0, width, height);
+        final int contentWidth = mContentView != null ? mContentView.getMeasuredWidth() : width;
+        final int contentHeight = mContentView != null
+                ? mContentView.getMeasuredHeight() : height;
+        mShadowLeftView.layout(-Math.max(0, mShadowLeft.getIntrinsicWidth()), 0, 0,
+                contentHeight);
+        mShadowRightView.layout(contentWidth, 0,
+                contentWidth + Math.max(0, mShadowRight.getIntrinsicWidth()), contentHeight);
+        mShadowBottomView.layout(0, contentHeight, contentWidth,
+                contentHeight + Math.max(0, mShadowBottom.getIntrinsicHeight()));
+        if (mContentView != null) {
+            // When moving by translation the offset is not part of the layout.
+            final int contentLeft = mMoveByTranslation ? 0 : mContentLeft;
+            final int contentTop = mMoveByTranslation ? 0 : mContentTop;
+            mContentView.layout(contentLeft, contentTop,
+                    contentLeft + mContentView.getMeasuredWidth(),
+                    contentTop + mContentView.getMeasuredHeight());
+            updateWindowBackground();
+        }
         mInLayout = false;
     }
 
     @Override
     public void requestLayout() {
+        mContentGeneration++;
         if (!mInLayout) {
             super.requestLayout();
         }
     }
 
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        if (mUnderlay != null && (mContentLeft != 0 || mContentTop != 0)
+                && (canvas.isHardwareAccelerated()
+                || Build.VERSION.SDK_INT < Build.VERSION_CODES.O)) {
+            // Hardware bitmaps can only be drawn on accelerated canvases.
+            canvas.drawBitmap(mUnderlay, mParallaxX, mParallaxY, null);
+        }
+        super.dispatchDraw(canvas);
+    }
+
     @Override
     protected boolean drawChild(Canvas canvas, View child, long drawingTime) {
-        final boolean drawContent = child == mContentView;
+        if (child == mContentView && !isVisible(mContentLeft, mContentTop,
+                mContentLeft + child.getWidth(), mContentTop + child.getHeight())) {
+            // Slid out of the window, as in the end of a finish animation.
+            // The shadow is a view of its own, culled in updateShadowView().
+            return false;
+        }
+        return super.drawChild(canvas, child, drawingTime);
+    }
+
+    /**
+     * @return true if the given rect intersects the bounds of this layout
+     */
+    private boolean isVisible(int left, int top, int right, int bottom) {
+        return left < getWidth() && right > 0 && top < getHeight() && bottom > 0;
+    }
+
+    /**
+     * Move the scrim view over the area uncovered by the content and fade it
+     * with the swipe. Only view properties change, the scrim itself is never
+     * redrawn.
+     */
+    private void updateScrim() {
+        if (!mSettleAnimators.isEmpty()) {
+            // Animated on the render thread
+            return;
+        }
+        final View scrim = mScrimView;
+        // Skipped entirely once its alpha rounds down to nothing
+        final int alpha = (int) ((mScrimColor >>> 24) * mScrimOpacity);
+        if (alpha == 0 || mContentView == null
+                || mDragHelper.getViewDragState() == STATE_IDLE
+                || mContentLeft == 0 && mContentTop == 0) {
+            if (scrim.getVisibility() != INVISIBLE) {
+                scrim.setVisibility(INVISIBLE);
+            }
+            return;
+        }
+        final float translation = getScrimTranslation(mContentLeft, mContentTop);
+        final boolean vertical = (mTrackingEdge & EDGE_BOTTOM) != 0;
+        scrim.setTranslationX(vertical ? 0 : translation);
+        scrim.setTranslationY(vertical ? translation : 0);
+        scrim.setAlpha(mScrimOpacity);
+        if (scrim.getVisibility() != VISIBLE) {
+            scrim.setVisibility(VISIBLE);
+        }
+    }
 
-        boolean ret = super.drawChild(canvas, child, drawingTime);
-        if (mScrimOpacity > 0 && drawContent
-                && mDragHelper.getViewDragState() != ViewDragHelper.STATE_IDLE) {
-            drawShadow(canvas, child);
-            drawScrim(canvas, child);
+    /**
+     * Move the shadow view of the tracking edge along with the content and
+     * fade it with the swipe, the other ones are hidden. As for the scrim,
+     * only view properties change, the shadows are drawn once.
+     */
+    private void updateShadow() {
+        if (!mSettleAnimators.isEmpty()) {
+            // Animated on the render thread
+            return;
         }
-        return ret;
+        final boolean shown = mScrimOpacity > 0 && mContentView != null
+                && mDragHelper.getViewDragState() != STATE_IDLE;
+        updateShadowView(mShadowLeftView, shown && mTrackingEdge == EDGE_LEFT);
+        updateShadowView(mShadowRightView, shown && mTrackingEdge == EDGE_RIGHT);
+        updateShadowView(mShadowBottomView, shown && mTrackingEdge == EDGE_BOTTOM);
     }
 
-    private void drawScrim(Canvas canvas, View child) {
-        final int baseAlpha = (mScrimColor & 0xff000000) >>> 24;
-        final int alpha = (int) (baseAlpha * mScrimOpacity);
-        final int color = alpha << 24 | (mScrimColor & 0xffffff);
+    /**
+     * @return Fraction of the swipe range covered with the content at the
+     * given position
+     */
+    private float getScrollPercent(int contentLeft, int contentTop) {
+        if ((mTrackingEdge & EDGE_LEFT) != 0) {
+            return Math.abs((float) contentLeft
+                    / (mContentView.getWidth() + mShadowLeft.getIntrinsicWidth()));
+        } else if ((mTrackingEdge & EDGE_RIGHT) != 0) {
+            return Math.abs((float) contentLeft
+                    / (mContentView.getWidth() + mShadowRight.getIntrinsicWidth()));
+        } else if ((mTrackingEdge & EDGE_BOTTOM) != 0) {
+            return Math.abs((float) contentTop
+                    / (mContentView.getHeight() + mShadowBottom.getIntrinsicHeight()));
+        }
+        return mScrollPercent;
+    }
 
+    /**
+     * @return Translation of the scrim along the axis of the tracking edge,
+     * to cover the area uncovered by the content at the given position
+     */
+    private float getScrimTranslation(int contentLeft, int contentTop) {
         if ((mTrackingEdge & EDGE_LEFT) != 0) {
-            canvas.clipRect(0, 0, child.getLeft(), getHeight());
+            return contentLeft - getWidth();
         } else if ((mTrackingEdge & EDGE_RIGHT) != 0) {
-            canvas.clipRect(child.getRight(), 0, getRight(), getHeight());
+            return contentLeft + mContentView.getWidth();
         } else if ((mTrackingEdge & EDGE_BOTTOM) != 0) {
-            canvas.clipRect(child.getLeft(), child.getBottom(), getRight(), getHeight());
+            return contentTop + mContentView.getHeight();
         }
-        canvas.drawColor(color);
+        return 0;
     }
 
-    private void drawShadow(Canvas canvas, View child) {
-        final Rect childRect = mTmpRect;
-        child.getHitRect(childRect);
+    private View getShadowView(int edge) {
+        if (edge == EDGE_LEFT) {
+            return mShadowLeftView;
+        } else if (edge == EDGE_RIGHT) {
+            return mShadowRightView;
+        } else if (edge == EDGE_BOTTOM) {
+            return mShadowBottomView;
+        }
+        return null;
+    }
 
-        if ((mEdgeFlag & EDGE_LEFT) != 0) {
-            mShadowLeft.setBounds(childRect.left - mShadowLeft.getIntrinsicWidth(), childRect.top,
-                    childRect.left, childRect.bottom);
-            mShadowLeft.setAlpha((int) (mScrimOpacity * FULL_ALPHA));
-            mShadowLeft.draw(canvas);
+    private void updateShadowView(View shadow, boolean shown) {
+        // Shadows trail the content, they are still in sight for a while
+        // once it is out.
+        if (!shown || !isVisible(shadow.getLeft() + mContentLeft, shadow.getTop() + mContentTop,
+                shadow.getRight() + mContentLeft, shadow.getBottom() + mContentTop)) {
+            if (shadow.getVisibility() != INVISIBLE) {
+                shadow.setVisibility(INVISIBLE);
+            }
+            return;
         }
+        // Laid out next to the content at rest
+        shadow.setTranslationX(mContentLeft);
+        shadow.setTranslationY(mContentTop);
+        shadow.setAlpha(mScrimOpacity);
+        if (shadow.getVisibility() != VISIBLE) {
+            shadow.setVisibility(VISIBLE);
+        }
+    }
 
-        if ((mEdgeFlag & EDGE_RIGHT) != 0) {
-            mShadowRight.setBounds(childRect.right, childRect.top,
-                    childRect.right + mShadowRight.getIntrinsicWidth(), childRect.bottom);
-            mShadowRight.setAlpha((int) (mScrimOpacity * FULL_ALPHA));
-            mShadowRight.draw(canvas);
+    private long getUncoveredArea() {
+        if ((mTrackingEdge & EDGE_LEFT) != 0) {
+            return (long) Math.max(0, mContentLeft) * getHeight();
+        } else if ((mTrackingEdge & EDGE_RIGHT) != 0) {
+            return (long) Math.max(0, -mContentLeft) * getHeight();
+        } else if ((mTrackingEdge & EDGE_BOTTOM) != 0) {
+            return (long) Math.max(0, -mContentTop) * getWidth();
         }
+        return 0;
+    }
 
-        if ((mEdgeFlag & EDGE_BOTTOM) != 0) {
-            mShadowBottom.setBounds(childRect.left, childRect.bottom, childRect.right,
-                    childRect.bottom + mShadowBottom.getIntrinsicHeight());
-            mShadowBottom.setAlpha((int) (mScrimOpacity * FULL_ALPHA));
-            mShadowBottom.draw(canvas);
+    /**
+     * Overdraw counter for debug builds of the library.
+     *
+     * @return Pixels covered by the underlay, scrim and shadow at the current
+     * position, or -1 in release builds
+     */
+    public long getDebugDecorationPixels() {
+        if (!BuildConfig.DEBUG) {
+            return -1;
+        }
+        long pixels = 0;
+        if (mUnderlay != null && (mContentLeft != 0 || mContentTop != 0)) {
+            pixels += (long) mUnderlay.getWidth() * mUnderlay.getHeight();
         }
+        if (mScrimView.getVisibility() == VISIBLE) {
+            pixels += getUncoveredArea();
+        }
+        pixels += getVisibleArea(mShadowLeftView);
+        pixels += getVisibleArea(mShadowRightView);
+        pixels += getVisibleArea(mShadowBottomView);
+        return pixels;
+    }
+
+    private static long getVisibleArea(View view) {
+        return view.getVisibility() == VISIBLE ? (long) view.getWidth() * view.getHeight() : 0;
+    }
+
+    /**
+     * Defer the work of {@link #attachToActivity(Activity)} out of the
+     * activity launch. Only a touch sentinel is added to the window at first;
+     * the content is wrapped on the first touch down on a tracked edge, or
+     * once the main thread goes idle after the first frame, whichever comes
+     * first. Off by default, must be set before attaching.
+     * <p>
+     * Wrapping the content of a live window detaches and reattaches the whole
+     * view hierarchy. Focus is restored afterwards, but the soft keyboard may
+     * close, SurfaceViews and TextureViews lose their surfaces, running view
+     * animations end, and the content is laid out again, during the edge
+     * touch down if that is what triggered the attach. Leave this off for
+     * screens that have any of these up right after launch.
+     * </p>
+     *
+     * @param enabled true to attach lazily
+     */
+    public void setLazyAttachEnabled(boolean enabled) {
+        mLazyAttach = enabled;
+    }
+
+    /**
+     * @return true if a lazy attach has been requested but not done yet
+     */
+    public boolean isAttachPending() {
+        return mEdgeSentinel != null;
     }
 
     public void attachToActivity(Activity activity) {
+        attachToActivity(activity, null);
+    }
+
+    /**
+     * Wrap the content of an activity in this layout.
+     *
+     * @param activity   Activity to attach to
+     * @param onAttached Run once the content is wrapped, right away unless
+     *                   lazy attach is enabled; may be null
+     * @see #setLazyAttachEnabled(boolean)
+     */
+    public void attachToActivity(Activity activity, Runnable onAttached) {
         mActivity = activity;
-        TypedArray a = activity.getTheme().obtainStyledAttributes(new int[]{
-                android.R.attr.windowBackground
-        });
-        int background = a.getResourceId(0, 0);
-        a.recycle();
+        if (mLazyAttach) {
+            mOnAttached = onAttached;
+            mEdgeSentinel = new EdgeSentinel(activity);
+            final ViewGroup decor = (ViewGroup) activity.getWindow().getDecorView();
+            // Until the content is wrapped and carries it, the window
+            // background is drawn by the decor view.
+            decor.setBackgroundResource(getWindowBackground(activity));
+            decor.addView(mEdgeSentinel,
+                    new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+            return;
+        }
+        wrapDecorChild(activity);
+        if (onAttached != null) {
+            onAttached.run();
+        }
+    }
+
+    /**
+     * Finish a lazy attach now, if one is pending.
+     */
+    private void completeLazyAttach() {
+        final EdgeSentinel sentinel = mEdgeSentinel;
+        if (sentinel == null) {
+            return;
+        }
+        mEdgeSentinel = null;
+        sentinel.cancelIdleAttach();
+        final View decorView = mActivity.getWindow().getDecorView();
+        // Detaching the content drops its focus, put it back afterwards.
+        final View focused = decorView.findFocus();
+        decorView.setBackgroundResource(0);
+        wrapDecorChild(mActivity);
+        if (focused != null && focused != sentinel && !focused.hasFocus()) {
+            focused.requestFocus();
+        }
+        // Lay out right away, a touch stream may be forwarded here before the
+        // next layout pass.
+        final View decor = (View) getParent();
+        measure(MeasureSpec.makeMeasureSpec(decor.getWidth(), MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(decor.getHeight(), MeasureSpec.EXACTLY));
+        layout(0, 0, decor.getWidth(), decor.getHeight());
+        if (!sentinel.isForwarding()) {
+            sentinel.remove();
+        }
+        final Runnable onAttached = mOnAttached;
+        mOnAttached = null;
+        if (onAttached != null) {
+            onAttached.run();
+        }
+    }
+
+    private void wrapDecorChild(Activity activity) {
+        int background = getWindowBackground(activity);
 
         ViewGroup decor = (ViewGroup) activity.getWindow().getDecorView();
         ViewGroup decorChild = (ViewGroup) decor.getChildAt(0);
         decorChild.setBackgroundResource(background);
+        mWindowBackground = decorChild.getBackground();
         decor.removeView(decorChild);
         addView(decorChild);
         setContentView(decorChild);
-        addSwipeListener(new SwipeBackListenerActivityAdapter(activity));
+        addSwipeListener(new SwipeBackListenerActivityAdapter(activity, this));
         decor.addView(this);
     }
 
+    private static int getWindowBackground(Activity activity) {
+        TypedArray a = activity.getTheme().obtainStyledAttributes(new int[]{
+                android.R.attr.windowBackground
+        });
+        int background = a.getResourceId(0, 0);
+        a.recycle();
+        return background;
+    }
+
     @Override
-    public void computeScroll() {
-        mScrimOpacity = 1 - mScrollPercent;
-        if (mDragHelper.continueSettling(true)) {
-            ViewCompat.postInvalidateOnAnimation(this);
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mFrameScheduler.cancel();
+        cancelRenderThreadSettle();
+        dropContentLayer();
+        resetPreviousContent();
+        removeCallbacks(mRestoreOpaqueRunnable);
+        if (mSnapshotRequested) {
+            removeCallbacks(mSnapshotRefresh);
+            Looper.myQueue().removeIdleHandler(mSnapshotIdleRefresh);
+            mSnapshotRefreshScheduled = false;
+            if (mSnapshotInvalidator != null) {
+                removeSnapshotInvalidator();
+            }
+            SnapshotCache.getInstance(getContext()).remove(mSnapshotKey);
+        }
+        mUnderlay = null;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void removeSnapshotInvalidator() {
+        getViewTreeObserver().removeOnDrawListener(mSnapshotInvalidator);
+        mSnapshotInvalidator = null;
+    }
+
+    /**
+     * Make the activity opaque again once a swipe has settled back, so the
+     * activity behind stops being composed and drawn.
+     */
+    private void restoreOpaque() {
+        if (mActivity == null || mActivity.isFinishing()
+                || mDragHelper.getViewDragState() != STATE_IDLE
+                || mContentLeft != 0 || mContentTop != 0) {
+            return;
+        }
+        final TranslucencyController controller = TranslucencyController.getInstance();
+        final int state = controller.getState(mActivity);
+        // With a snapshot underlay even the translucency from the theme is
+        // not needed.
+        if (state == TranslucencyController.STATE_TRANSLUCENT
+                || state == TranslucencyController.STATE_UNKNOWN && mSnapshotUnderlay
+                && mPreviousLayout != null && mPreviousLayout.get() != null) {
+            controller.convertFromTranslucent(mActivity);
+        }
+    }
+
+    /**
+     * Apply everything that happened since the last frame: the latest drag
+     * position, or one step of the settle animation. Either way the content
+     * is moved, listeners are told and the layout is invalidated at most once.
+     */
+    private void onFrame(long frameTimeNanos) {
+        mDragHelper.applyPendingPosition(frameTimeNanos);
+        if (mDragHelper.continueSettling(false) || mDragHelper.hasPendingPosition()) {
+            mFrameScheduler.schedule();
+        }
+    }
+
+    /**
+     * Add a hidden view drawing only its background, ignored by accessibility.
+     */
+    private View addDecorationView(Context context) {
+        final View view = new DecorationView(context);
+        view.setVisibility(INVISIBLE);
+        ViewCompat.setImportantForAccessibility(view, ViewCompat.IMPORTANT_FOR_ACCESSIBILITY_NO);
+        addView(view, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+        return view;
+    }
+
+    /**
+     * Plain background, a color fill or a shadow. It draws nothing that
+     * overlaps, so its alpha is applied directly to the background instead of
+     * through an offscreen buffer.
+     */
+    private static class DecorationView extends View {
+        DecorationView(Context context) {
+            super(context);
+        }
+
+        @Override
+        public boolean hasOverlappingRendering() {
+            return false;
+        }
+    }
+
+    /**
+     * Transparent view on top of the window while a lazy attach is pending.
+     * A touch down on a tracked edge completes the attach, and the rest of
+     * that touch stream is forwarded to the layout. Other touches go through.
+     */
+    private class EdgeSentinel extends View {
+        private final MessageQueue.IdleHandler mIdleAttach = new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                mIdleAttachScheduled = false;
+                completeLazyAttach();
+                return false;
+            }
+        };
+
+        private boolean mIdleAttachScheduled;
+
+        private boolean mFrameDrawn;
+
+        private boolean mForwarding;
+
+        EdgeSentinel(Context context) {
+            super(context);
+            ViewCompat.setImportantForAccessibility(this,
+                    ViewCompat.IMPORTANT_FOR_ACCESSIBILITY_NO);
+        }
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            if (!mFrameDrawn) {
+                // Wait for the first frame to be out before doing the work.
+                mFrameDrawn = true;
+                mIdleAttachScheduled = true;
+                Looper.myQueue().addIdleHandler(mIdleAttach);
+            }
+        }
+
+        @Override
+        public boolean onTouchEvent(MotionEvent event) {
+            final int action = MotionEventCompat.getActionMasked(event);
+            if (action == MotionEvent.ACTION_DOWN) {
+                if (!mEnable || !isEdgeUnder(event.getX(), event.getY())) {
+                    return false;
+                }
+                mForwarding = true;
+                completeLazyAttach();
+            }
+            if (!mForwarding) {
+                return false;
+            }
+            // Both views fill the window, coordinates are the same.
+            SwipeBackLayout.this.dispatchTouchEvent(event);
+            if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+                mForwarding = false;
+                // Not while the window is dispatching to us.
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        remove();
+                    }
+                });
+            }
+            return true;
+        }
+
+        @Override
+        protected void onDetachedFromWindow() {
+            super.onDetachedFromWindow();
+            cancelIdleAttach();
+        }
+
+        boolean isForwarding() {
+            return mForwarding;
+        }
+
+        void cancelIdleAttach() {
+            if (mIdleAttachScheduled) {
+                mIdleAttachScheduled = false;
+                Looper.myQueue().removeIdleHandler(mIdleAttach);
+            }
+        }
+
+        void remove() {
+            final ViewGroup parent = (ViewGroup) getParent();
+            if (parent != null) {
+                parent.removeView(this);
+            }
+        }
+
+        private boolean isEdgeUnder(float x, float y) {
+            final int edgeSize = mDragHelper.getEdgeSize();
+            return (mEdgeFlag & EDGE_LEFT) != 0 && x < edgeSize
+                    || (mEdgeFlag & EDGE_RIGHT) != 0 && x > getWidth() - edgeSize
+                    || (mEdgeFlag & EDGE_BOTTOM) != 0 && y > getHeight() - edgeSize;
         }
     }
 
@@ -487,22 +1772,17 @@ public class SwipeBackLayout extends FrameLayout {
 
         @Override
         public boolean tryCaptureView(View view, int i) {
-            boolean ret = mDragHelper.isEdgeTouched(mEdgeFlag, i);
-            if (ret) {
-                if (mDragHelper.isEdgeTouched(EDGE_LEFT, i)) {
-                    mTrackingEdge = EDGE_LEFT;
-                } else if (mDragHelper.isEdgeTouched(EDGE_RIGHT, i)) {
-                    mTrackingEdge = EDGE_RIGHT;
-                } else if (mDragHelper.isEdgeTouched(EDGE_BOTTOM, i)) {
-                    mTrackingEdge = EDGE_BOTTOM;
-                }
-                if (mListeners != null && !mListeners.isEmpty()) {
-                    for (SwipeListener listener : mListeners) {
-                        listener.onEdgeTouch(mTrackingEdge);
-                    }
-                }
+            if (view != mContentView) {
+                return false;
+            }
+            if (mCatchDuringSettle && mDragHelper.getViewDragState() == STATE_SETTLING) {
+                // Grab the content back mid-animation, the tracking edge is
+                // the one of the swipe being settled.
+                cancelRenderThreadSettle();
                 mIsScrollOverValid = true;
+                return true;
             }
+            boolean ret = mDragHelper.isEdgeTouched(mEdgeFlag, i);
             boolean directionCheck = false;
             if (mEdgeFlag == EDGE_LEFT || mEdgeFlag == EDGE_RIGHT) {
                 directionCheck = !mDragHelper.checkTouchSlop(ViewDragHelper.DIRECTION_VERTICAL, i);
@@ -512,7 +1792,62 @@ public class SwipeBackLayout extends FrameLayout {
             } else if (mEdgeFlag == EDGE_ALL) {
                 directionCheck = true;
             }
-            return ret & directionCheck;
+            if (!ret || !directionCheck) {
+                return false;
+            }
+            if (mDragHelper.isEdgeTouched(EDGE_LEFT, i)) {
+                mTrackingEdge = EDGE_LEFT;
+            } else if (mDragHelper.isEdgeTouched(EDGE_RIGHT, i)) {
+                mTrackingEdge = EDGE_RIGHT;
+            } else if (mDragHelper.isEdgeTouched(EDGE_BOTTOM, i)) {
+                mTrackingEdge = EDGE_BOTTOM;
+            }
+            // Only a confirmed swipe is worth the window conversion done by
+            // onEdgeTouch listeners, which a snapshot underlay avoids.
+            mEdgeTouchPending = false;
+            prepareUnderlay();
+            if (mListeners != null && !mListeners.isEmpty()) {
+                for (SwipeListener listener : mListeners) {
+                    listener.onEdgeTouch(mTrackingEdge);
+                }
+            }
+            mIsScrollOverValid = true;
+            return true;
+        }
+
+        @Override
+        public void onEdgeTouched(int edgeFlags, int pointerId) {
+            super.onEdgeTouched(edgeFlags, pointerId);
+            int edge = 0;
+            if ((edgeFlags & EDGE_LEFT) != 0) {
+                edge = EDGE_LEFT;
+            } else if ((edgeFlags & EDGE_RIGHT) != 0) {
+                edge = EDGE_RIGHT;
+            } else if ((edgeFlags & EDGE_BOTTOM) != 0) {
+                edge = EDGE_BOTTOM;
+            }
+            if (mEdgeTouchPending) {
+                // The same down seen again by onTouchEvent after
+                // onInterceptTouchEvent, when no child consumed it.
+                return;
+            }
+            if (mDragHelper.getViewDragState() == STATE_DRAGGING) {
+                // The down already captured the content, catching it while
+                // settling or starting a swipe right away; tryCaptureView
+                // has taken the swipe as confirmed.
+                return;
+            }
+            mEdgeTouchPending = true;
+            // A swipe is likely, get the layer ready before the touch slop
+            // is crossed.
+            promoteContentLayer();
+            if (mListeners != null && !mListeners.isEmpty()) {
+                for (SwipeListener listener : mListeners) {
+                    if (listener instanceof EdgeTouchPendingListener) {
+                        ((EdgeTouchPendingListener) listener).onEdgeTouchPending(edge);
+                    }
+                }
+            }
         }
 
         @Override
@@ -528,19 +1863,20 @@ public class SwipeBackLayout extends FrameLayout {
         @Override
         public void onViewPositionChanged(View changedView, int left, int top, int dx, int dy) {
             super.onViewPositionChanged(changedView, left, top, dx, dy);
-            if ((mTrackingEdge & EDGE_LEFT) != 0) {
-                mScrollPercent = Math.abs((float) left
-                        / (mContentView.getWidth() + mShadowLeft.getIntrinsicWidth()));
-            } else if ((mTrackingEdge & EDGE_RIGHT) != 0) {
-                mScrollPercent = Math.abs((float) left
-                        / (mContentView.getWidth() + mShadowRight.getIntrinsicWidth()));
-            } else if ((mTrackingEdge & EDGE_BOTTOM) != 0) {
-                mScrollPercent = Math.abs((float) top
-                        / (mContentView.getHeight() + mShadowBottom.getIntrinsicHeight()));
-            }
+            mScrollPercent = getScrollPercent(left, top);
+            final boolean wasAtRest = mContentLeft == 0 && mContentTop == 0;
             mContentLeft = left;
             mContentTop = top;
-            invalidate();
+            mScrimOpacity = 1 - mScrollPercent;
+            updateParallax(mScrollPercent >= 1);
+            updateScrim();
+            updateShadow();
+            if (mUnderlay != null && (mParallaxFactor != 0
+                    || wasAtRest != (left == 0 && top == 0))) {
+                // The underlay is the only decoration drawn by this layout,
+                // redraw it when it moves, shows or hides.
+                invalidate();
+            }
             if (mScrollPercent < mScrollThreshold && !mIsScrollOverValid) {
                 mIsScrollOverValid = true;
             }
@@ -576,20 +1912,30 @@ public class SwipeBackLayout extends FrameLayout {
             final int childWidth = releasedChild.getWidth();
             final int childHeight = releasedChild.getHeight();
 
+            // The policy also sees slow releases, which the callback arguments
+            // have dropped; the velocity is zero for a cancelled stream.
+            final float releaseXVel = mDragHelper.getReleaseXVelocity();
+            final float releaseYVel = mDragHelper.getReleaseYVelocity();
             int left = 0, top = 0;
             if ((mTrackingEdge & EDGE_LEFT) != 0) {
-                left = xvel > 0 || xvel == 0 && mScrollPercent > mScrollThreshold ? childWidth
-                        + mShadowLeft.getIntrinsicWidth() + OVERSCROLL_DISTANCE : 0;
+                final int range = childWidth + mShadowLeft.getIntrinsicWidth();
+                left = shouldFinish(releaseXVel, range) ? range + OVERSCROLL_DISTANCE : 0;
             } else if ((mTrackingEdge & EDGE_RIGHT) != 0) {
-                left = xvel < 0 || xvel == 0 && mScrollPercent > mScrollThreshold ? -(childWidth
-                        + mShadowLeft.getIntrinsicWidth() + OVERSCROLL_DISTANCE) : 0;
+                final int range = childWidth + mShadowRight.getIntrinsicWidth();
+                left = shouldFinish(-releaseXVel, range) ? -(range + OVERSCROLL_DISTANCE) : 0;
             } else if ((mTrackingEdge & EDGE_BOTTOM) != 0) {
-                top = yvel < 0 || yvel == 0 && mScrollPercent > mScrollThreshold ? -(childHeight
-                        + mShadowBottom.getIntrinsicHeight() + OVERSCROLL_DISTANCE) : 0;
+                final int range = childHeight + mShadowBottom.getIntrinsicHeight();
+                top = shouldFinish(-releaseYVel, range) ? -(range + OVERSCROLL_DISTANCE) : 0;
+            }
+
+            if (mDragHelper.settleCapturedViewAt(left, top)) {
+                startRenderThreadSettle(left, top);
+                mFrameScheduler.schedule();
             }
+        }
 
-            mDragHelper.settleCapturedViewAt(left, top);
-            invalidate();
+        private boolean shouldFinish(float velocity, int range) {
+            return mReleasePolicy.shouldFinish(mScrollPercent, velocity, range, mScrollThreshold);
         }
 
         @Override
@@ -615,6 +1961,24 @@ public class SwipeBackLayout extends FrameLayout {
         @Override
         public void onViewDragStateChanged(int state) {
             super.onViewDragStateChanged(state);
+            if (state != STATE_SETTLING) {
+                cancelRenderThreadSettle();
+            }
+            if (state == STATE_IDLE) {
+                dropContentLayer();
+            } else {
+                promoteContentLayer();
+            }
+            updateScrim();
+            updateShadow();
+            removeCallbacks(mRestoreOpaqueRunnable);
+            if (state == STATE_IDLE) {
+                resetPreviousContent();
+            }
+            if (state == STATE_IDLE && mContentLeft == 0 && mContentTop == 0) {
+                mUnderlay = null;
+                postDelayed(mRestoreOpaqueRunnable, RESTORE_OPAQUE_DELAY);
+            }
             if (mListeners != null && !mListeners.isEmpty()) {
                 for (SwipeListener listener : mListeners) {
                     listener.onScrollStateChange(state, mScrollPercent);
@@ -0,0 +1,246 @@
+package me.imid.swipebacklayout.lib;
+
+import android.app.Activity;
+import android.app.ActivityOptions;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.util.Log;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Switches activities between translucent and opaque at runtime.
+ * <p>
+ * Before Android 11 this relies on private {@link Activity} methods. They are
+ * looked up once per process, which can be done ahead of time with
+ * {@link #prewarm()} so the first swipe does not pay for reflection. On
+ * Android 11 and later the public <code>Activity.setTranslucent</code> is used.
+ * </p>
+ * <p>
+ * The last state set on each activity is remembered, so asking for the state
+ * an activity is already in costs nothing. Every conversion call is timed and
+ * failures, including conversions the platform refuses, are logged and
+ * reported to the {@link Listener}.
+ * </p>
+ */
+public class TranslucencyController {
+    private static final String TAG = "TranslucencyController";
+
+    /**
+     * The activity has not been converted yet, its state is the one from its
+     * theme.
+     */
+    public static final int STATE_UNKNOWN = 0;
+
+    public static final int STATE_TRANSLUCENT = 1;
+
+    public static final int STATE_OPAQUE = 2;
+
+    // Build.VERSION_CODES.R, which introduced Activity#setTranslucent
+    private static final int API_SET_TRANSLUCENT = 30;
+
+    private static final TranslucencyController sInstance = new TranslucencyController();
+
+    /**
+     * Receives the outcome of conversions, on the thread that asked for them.
+     */
+    public interface Listener {
+        /**
+         * @param activity      Converted activity
+         * @param translucent   true if it was made translucent, false if opaque
+         * @param durationNanos Time spent in the conversion call. The window
+         *                      manager applies the change asynchronously, so
+         *                      this does not include the time until the
+         *                      activity behind is actually shown or hidden.
+         */
+        void onConverted(Activity activity, boolean translucent, long durationNanos);
+
+        /**
+         * @param activity    Activity that could not be converted
+         * @param translucent true if it was to be made translucent, false if
+         *                    opaque
+         * @param error       Cause of the failure, an
+         *                    {@link IllegalStateException} if the platform
+         *                    refused the conversion
+         */
+        void onConversionFailed(Activity activity, boolean translucent, Throwable error);
+    }
+
+    private final Map<Activity, Integer> mStates = new WeakHashMap<>();
+
+    private final Object mResolveLock = new Object();
+
+    private volatile boolean mResolved;
+
+    private boolean mPrewarmStarted;
+
+    private Method mSetTranslucent;
+
+    private Method mConvertFromTranslucent;
+
+    private Method mConvertToTranslucent;
+
+    private Method mGetActivityOptions;
+
+    // Why the methods needed on this platform could not be found, if so
+    private Throwable mResolveError;
+
+    private Listener mListener;
+
+    private TranslucencyController() {
+    }
+
+    public static TranslucencyController getInstance() {
+        return sInstance;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Look the conversion methods up on a background thread. Does nothing if
+     * that has been done or started already.
+     */
+    public void prewarm() {
+        synchronized (mResolveLock) {
+            if (mResolved || mPrewarmStarted) {
+                return;
+            }
+            mPrewarmStarted = true;
+        }
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                resolve();
+            }
+        });
+    }
+
+    /**
+     * @param activity Activity to query
+     * @return The state last set through this controller, one of
+     * {@link #STATE_UNKNOWN}, {@link #STATE_TRANSLUCENT} or
+     * {@link #STATE_OPAQUE}
+     */
+    public int getState(Activity activity) {
+        final Integer state = mStates.get(activity);
+        return state != null ? state : STATE_UNKNOWN;
+    }
+
+    /**
+     * Make a translucent themed activity translucent again after it was made
+     * opaque, so the activity behind it is drawn.
+     *
+     * @param activity Activity to convert
+     * @return true if the activity is translucent, as far as this controller
+     * knows
+     */
+    public boolean convertToTranslucent(Activity activity) {
+        return convert(activity, true);
+    }
+
+    /**
+     * Make a translucent themed activity opaque, allowing the surface of the
+     * activity behind it to be released.
+     *
+     * @param activity Activity to convert
+     * @return true if the activity is opaque, as far as this controller knows
+     */
+    public boolean convertFromTranslucent(Activity activity) {
+        return convert(activity, false);
+    }
+
+    private boolean convert(Activity activity, boolean translucent) {
+        final int target = translucent ? STATE_TRANSLUCENT : STATE_OPAQUE;
+        if (getState(activity) == target) {
+            return true;
+        }
+        final long start = System.nanoTime();
+        try {
+            resolve();
+            if (mResolveError != null) {
+                throw mResolveError;
+            }
+            final Object result;
+            if (mSetTranslucent != null) {
+                result = mSetTranslucent.invoke(activity, translucent);
+            } else if (!translucent) {
+                result = mConvertFromTranslucent.invoke(activity);
+            } else if (mGetActivityOptions != null) {
+                final Object options = mGetActivityOptions.invoke(activity);
+                result = mConvertToTranslucent.invoke(activity, null, options);
+            } else {
+                result = mConvertToTranslucent.invoke(activity, new Object[] {
+                    null
+                });
+            }
+            // The methods return whether the window could be converted since
+            // Lollipop, and nothing before.
+            if (Boolean.FALSE.equals(result)) {
+                throw new IllegalStateException("Conversion refused by the platform");
+            }
+        } catch (Throwable t) {
+            Log.w(TAG, "Failed to make " + activity + (translucent ? " translucent" : " opaque"), t);
+            mStates.remove(activity);
+            if (mListener != null) {
+                mListener.onConversionFailed(activity, translucent, t);
+            }
+            return false;
+        }
+        mStates.put(activity, target);
+        if (mListener != null) {
+            mListener.onConverted(activity, translucent, System.nanoTime() - start);
+        }
+        return true;
+    }
+
+    /**
+     * Find the methods used on this platform. Runs once per process.
+     */
+    private void resolve() {
+        if (mResolved) {
+            return;
+        }
+        synchronized (mResolveLock) {
+            if (mResolved) {
+                return;
+            }
+            try {
+                if (Build.VERSION.SDK_INT >= API_SET_TRANSLUCENT) {
+                    mSetTranslucent = Activity.class.getMethod("setTranslucent", boolean.class);
+                } else {
+                    resolvePrivateMethods();
+                }
+            } catch (Throwable t) {
+                mResolveError = t;
+            }
+            mResolved = true;
+        }
+    }
+
+    private void resolvePrivateMethods() throws NoSuchMethodException {
+        mConvertFromTranslucent = Activity.class.getDeclaredMethod("convertFromTranslucent");
+        mConvertFromTranslucent.setAccessible(true);
+
+        Class<?> translucentConversionListenerClazz = null;
+        for (Class<?> clazz : Activity.class.getDeclaredClasses()) {
+            if (clazz.getSimpleName().contains("TranslucentConversionListener")) {
+                translucentConversionListenerClazz = clazz;
+                break;
+            }
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            mGetActivityOptions = Activity.class.getDeclaredMethod("getActivityOptions");
+            mGetActivityOptions.setAccessible(true);
+            mConvertToTranslucent = Activity.class.getDeclaredMethod("convertToTranslucent",
+                    translucentConversionListenerClazz, ActivityOptions.class);
+        } else {
+            mConvertToTranslucent = Activity.class.getDeclaredMethod("convertToTranslucent",
+                    translucentConversionListenerClazz);
+        }
+        mConvertToTranslucent.setAccessible(true);
+    }
+}
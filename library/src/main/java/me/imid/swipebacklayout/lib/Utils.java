@@ -2,13 +2,11 @@
 package me.imid.swipebacklayout.lib;
 
 import android.app.Activity;
-import android.app.ActivityOptions;
-import android.os.Build;
-
-import java.lang.reflect.Method;
 
 /**
  * Created by Chaojun Wang on 6/9/14.
+ *
+ * @see TranslucencyController
  */
 public class Utils {
     private Utils() {
@@ -27,12 +25,7 @@ public class Utils {
      * with the {@link android.R.attr#windowIsFloating} attribute.
      */
     public static void convertActivityFromTranslucent(Activity activity) {
-        try {
-            Method method = Activity.class.getDeclaredMethod("convertFromTranslucent");
-            method.setAccessible(true);
-            method.invoke(activity);
-        } catch (Throwable t) {
-        }
+        TranslucencyController.getInstance().convertFromTranslucent(activity);
     }
 
     /**
@@ -48,56 +41,18 @@ public class Utils {
      * with the {@link android.R.attr#windowIsFloating} attribute.
      */
     public static void convertActivityToTranslucent(Activity activity) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            convertActivityToTranslucentAfterL(activity);
-        } else {
-            convertActivityToTranslucentBeforeL(activity);
-        }
+        TranslucencyController.getInstance().convertToTranslucent(activity);
     }
 
     /**
      * Calling the convertToTranslucent method on platforms before Android 5.0
+     *
+     * @deprecated The platform specific path is chosen by
+     * {@link TranslucencyController}, use
+     * {@link #convertActivityToTranslucent(Activity)}
      */
+    @Deprecated
     public static void convertActivityToTranslucentBeforeL(Activity activity) {
-        try {
-            Class<?>[] classes = Activity.class.getDeclaredClasses();
-            Class<?> translucentConversionListenerClazz = null;
-            for (Class clazz : classes) {
-                if (clazz.getSimpleName().contains("TranslucentConversionListener")) {
-                    translucentConversionListenerClazz = clazz;
-                }
-            }
-            Method method = Activity.class.getDeclaredMethod("convertToTranslucent",
-                    translucentConversionListenerClazz);
-            method.setAccessible(true);
-            method.invoke(activity, new Object[] {
-                null
-            });
-        } catch (Throwable t) {
-        }
-    }
-
-    /**
-     * Calling the convertToTranslucent method on platforms after Android 5.0
-     */
-    private static void convertActivityToTranslucentAfterL(Activity activity) {
-        try {
-            Method getActivityOptions = Activity.class.getDeclaredMethod("getActivityOptions");
-            getActivityOptions.setAccessible(true);
-            Object options = getActivityOptions.invoke(activity);
-
-            Class<?>[] classes = Activity.class.getDeclaredClasses();
-            Class<?> translucentConversionListenerClazz = null;
-            for (Class clazz : classes) {
-                if (clazz.getSimpleName().contains("TranslucentConversionListener")) {
-                    translucentConversionListenerClazz = clazz;
-                }
-            }
-            Method convertToTranslucent = Activity.class.getDeclaredMethod("convertToTranslucent",
-                    translucentConversionListenerClazz, ActivityOptions.class);
-            convertToTranslucent.setAccessible(true);
-            convertToTranslucent.invoke(activity, null, options);
-        } catch (Throwable t) {
-        }
+        TranslucencyController.getInstance().convertToTranslucent(activity);
     }
 }
@@ -0,0 +1,357 @@
+package me.imid.swipebacklayout.lib;
+
+/**
+ * Estimates the velocity of a single pointer from its recent movements.
+ * <p>
+ * Samples are kept in a fixed size ring buffer, so adding movements and
+ * computing velocities never allocates. The estimator has no dependency on
+ * the Android framework and works on plain timestamps and coordinates.
+ * </p>
+ */
+public class VelocityEstimator {
+    /**
+     * Fit a second degree polynomial to the recent samples using least
+     * squares and use its slope at the newest sample.
+     */
+    public static final int STRATEGY_LSQ2 = 0;
+
+    /**
+     * Accumulate the kinetic energy imparted between consecutive samples and
+     * convert it back to a velocity. Follows the newest movements more
+     * closely than the least squares fit, including a jittery last sample.
+     */
+    public static final int STRATEGY_IMPULSE = 1;
+
+    private static final int HISTORY_SIZE = 20;
+
+    // Samples older than this, relative to the newest one, are ignored
+    private static final long HORIZON = 100; // ms
+
+    // A gap this long between two samples means the pointer had stopped
+    private static final long ASSUME_POINTER_STOPPED_TIME = 40; // ms
+
+    // Spacing of the synthetic samples written by seedVelocity
+    private static final long SEED_INTERVAL = 16; // ms
+
+    private final long[] mTime = new long[HISTORY_SIZE];
+
+    private final float[] mX = new float[HISTORY_SIZE];
+
+    private final float[] mY = new float[HISTORY_SIZE];
+
+    // Scratch space holding the usable samples, oldest first
+    private final float[] mSampleT = new float[HISTORY_SIZE];
+
+    private final float[] mSampleX = new float[HISTORY_SIZE];
+
+    private final float[] mSampleY = new float[HISTORY_SIZE];
+
+    // Index of the newest sample in the ring buffer
+    private int mIndex;
+
+    private int mCount;
+
+    private int mStrategy;
+
+    private float mXVelocity;
+
+    private float mYVelocity;
+
+    public VelocityEstimator() {
+        this(STRATEGY_LSQ2);
+    }
+
+    /**
+     * @param strategy Strategy used to compute velocities
+     * @see #STRATEGY_LSQ2
+     * @see #STRATEGY_IMPULSE
+     */
+    public VelocityEstimator(int strategy) {
+        setStrategy(strategy);
+    }
+
+    /**
+     * Set the strategy used by {@link #computeCurrentVelocity(int, float)}.
+     *
+     * @param strategy Strategy used to compute velocities
+     * @see #STRATEGY_LSQ2
+     * @see #STRATEGY_IMPULSE
+     */
+    public void setStrategy(int strategy) {
+        if (strategy != STRATEGY_LSQ2 && strategy != STRATEGY_IMPULSE) {
+            throw new IllegalArgumentException("Unknown velocity strategy " + strategy);
+        }
+        mStrategy = strategy;
+    }
+
+    public int getStrategy() {
+        return mStrategy;
+    }
+
+    /**
+     * Forget every sample, as done at the start of a new gesture.
+     */
+    public void clear() {
+        mCount = 0;
+        mXVelocity = 0;
+        mYVelocity = 0;
+    }
+
+    /**
+     * Add a pointer position to the history.
+     *
+     * @param eventTime Time of the sample in milliseconds
+     * @param x         X coordinate of the pointer
+     * @param y         Y coordinate of the pointer
+     */
+    public void addMovement(long eventTime, float x, float y) {
+        if (mCount > 0) {
+            final long newest = mTime[mIndex];
+            if (eventTime < newest) {
+                // Out of order sample, the stream was probably reset.
+                mCount = 0;
+            } else if (eventTime == newest) {
+                mX[mIndex] = x;
+                mY[mIndex] = y;
+                return;
+            } else if (eventTime - newest > ASSUME_POINTER_STOPPED_TIME) {
+                // The pointer stopped in between, older samples are no
+                // longer relevant.
+                mCount = 0;
+            }
+        }
+        mIndex = mCount == 0 ? 0 : (mIndex + 1) % HISTORY_SIZE;
+        mTime[mIndex] = eventTime;
+        mX[mIndex] = x;
+        mY[mIndex] = y;
+        if (mCount < HISTORY_SIZE) {
+            mCount++;
+        }
+    }
+
+    /**
+     * Compute the current velocity from the collected samples. Retrieve the
+     * result with {@link #getXVelocity()} and {@link #getYVelocity()}.
+     *
+     * @param units       The units you would like the velocity in. A value of 1
+     *                    provides pixels per millisecond, 1000 provides pixels per
+     *                    second, etc.
+     * @param maxVelocity The maximum magnitude that can be computed, in the
+     *                    given units
+     */
+    public void computeCurrentVelocity(int units, float maxVelocity) {
+        final int count = collectSamples();
+        if (count < 2) {
+            mXVelocity = 0;
+            mYVelocity = 0;
+            return;
+        }
+        final float vx;
+        final float vy;
+        if (mStrategy == STRATEGY_IMPULSE) {
+            vx = impulseVelocity(mSampleX, count);
+            vy = impulseVelocity(mSampleY, count);
+        } else {
+            vx = leastSquaresVelocity(mSampleX, count);
+            vy = leastSquaresVelocity(mSampleY, count);
+        }
+        mXVelocity = clamp(vx * units, maxVelocity);
+        mYVelocity = clamp(vy * units, maxVelocity);
+    }
+
+    /**
+     * @return The X velocity computed by the last call to
+     * {@link #computeCurrentVelocity(int, float)}
+     */
+    public float getXVelocity() {
+        return mXVelocity;
+    }
+
+    /**
+     * @return The Y velocity computed by the last call to
+     * {@link #computeCurrentVelocity(int, float)}
+     */
+    public float getYVelocity() {
+        return mYVelocity;
+    }
+
+    /**
+     * Make the history report the given velocity, keeping the newest sample.
+     * Used when a pointer takes over something that was already moving, so
+     * the momentum carries into the velocity of the new gesture until real
+     * movements replace it.
+     *
+     * @param xvel X velocity in pixels per second
+     * @param yvel Y velocity in pixels per second
+     */
+    public void seedVelocity(float xvel, float yvel) {
+        if (mCount == 0) {
+            return;
+        }
+        final long time = mTime[mIndex];
+        final float x = mX[mIndex];
+        final float y = mY[mIndex];
+        // Two samples one frame apart define the velocity exactly.
+        mCount = 2;
+        mTime[0] = time - SEED_INTERVAL;
+        mX[0] = x - xvel * SEED_INTERVAL / 1000;
+        mY[0] = y - yvel * SEED_INTERVAL / 1000;
+        mIndex = 1;
+        mTime[1] = time;
+        mX[1] = x;
+        mY[1] = y;
+    }
+
+    /**
+     * @return Time of the newest sample in milliseconds, or -1 if there is
+     * none
+     */
+    public long getLatestEventTime() {
+        return mCount > 0 ? mTime[mIndex] : -1;
+    }
+
+    /**
+     * @return X movement between the two newest samples, or 0 if there are
+     * fewer than two
+     */
+    public float getLatestDeltaX() {
+        return mCount > 1 ? mX[mIndex] - mX[(mIndex + HISTORY_SIZE - 1) % HISTORY_SIZE] : 0;
+    }
+
+    /**
+     * @return Y movement between the two newest samples, or 0 if there are
+     * fewer than two
+     */
+    public float getLatestDeltaY() {
+        return mCount > 1 ? mY[mIndex] - mY[(mIndex + HISTORY_SIZE - 1) % HISTORY_SIZE] : 0;
+    }
+
+    /**
+     * @return Time between the two newest samples in milliseconds, or 0 if
+     * there are fewer than two
+     */
+    public long getLatestInterval() {
+        return mCount > 1 ? mTime[mIndex] - mTime[(mIndex + HISTORY_SIZE - 1) % HISTORY_SIZE] : 0;
+    }
+
+    /**
+     * Copy the samples within the horizon into the scratch arrays, oldest
+     * first, with times relative to the newest sample.
+     *
+     * @return number of samples copied
+     */
+    private int collectSamples() {
+        if (mCount == 0) {
+            return 0;
+        }
+        final long newest = mTime[mIndex];
+        int count = 0;
+        int index = mIndex;
+        long previous = newest;
+        while (count < mCount) {
+            final long time = mTime[index];
+            if (newest - time > HORIZON || previous - time > ASSUME_POINTER_STOPPED_TIME) {
+                break;
+            }
+            count++;
+            previous = time;
+            index = (index + HISTORY_SIZE - 1) % HISTORY_SIZE;
+        }
+        // Walk forward again so the scratch arrays are ordered oldest first.
+        index = (mIndex + HISTORY_SIZE - count + 1) % HISTORY_SIZE;
+        for (int i = 0; i < count; i++) {
+            mSampleT[i] = mTime[index] - newest;
+            mSampleX[i] = mX[index];
+            mSampleY[i] = mY[index];
+            index = (index + 1) % HISTORY_SIZE;
+        }
+        return count;
+    }
+
+    /**
+     * Slope at t = 0 of the least squares quadratic through the samples, in
+     * pixels per millisecond. Falls back to a straight line when there are too
+     * few samples or they are degenerate.
+     */
+    private float leastSquaresVelocity(float[] pos, int count) {
+        final float[] t = mSampleT;
+        if (count < 3) {
+            return lineVelocity(pos, count);
+        }
+        double s1 = 0, s2 = 0, s3 = 0, s4 = 0;
+        double p0 = 0, p1 = 0, p2 = 0;
+        for (int i = 0; i < count; i++) {
+            final double ti = t[i];
+            final double ti2 = ti * ti;
+            final double pi = pos[i];
+            s1 += ti;
+            s2 += ti2;
+            s3 += ti2 * ti;
+            s4 += ti2 * ti2;
+            p0 += pi;
+            p1 += pi * ti;
+            p2 += pi * ti2;
+        }
+        final double s0 = count;
+        // Solve the normal equations for the linear coefficient with
+        // Cramer's rule.
+        final double det = s0 * (s2 * s4 - s3 * s3) - s1 * (s1 * s4 - s3 * s2)
+                + s2 * (s1 * s3 - s2 * s2);
+        if (Math.abs(det) < 1e-6) {
+            return lineVelocity(pos, count);
+        }
+        final double detB = s0 * (p1 * s4 - s3 * p2) - p0 * (s1 * s4 - s3 * s2)
+                + s2 * (s1 * p2 - p1 * s2);
+        return (float) (detB / det);
+    }
+
+    private float lineVelocity(float[] pos, int count) {
+        final float dt = mSampleT[count - 1] - mSampleT[0];
+        if (dt == 0) {
+            return 0;
+        }
+        return (pos[count - 1] - pos[0]) / dt;
+    }
+
+    /**
+     * Velocity derived from the work done on the pointer between each pair of
+     * consecutive samples, in pixels per millisecond.
+     */
+    private float impulseVelocity(float[] pos, int count) {
+        final float[] t = mSampleT;
+        if (count == 2) {
+            return lineVelocity(pos, count);
+        }
+        float work = 0;
+        for (int i = 1; i < count; i++) {
+            final float dt = t[i] - t[i - 1];
+            if (dt == 0) {
+                continue;
+            }
+            final float vprev = kineticEnergyToVelocity(work);
+            final float vcurr = (pos[i] - pos[i - 1]) / dt;
+            work += (vcurr - vprev) * Math.abs(vcurr);
+            if (i == 1) {
+                // The pointer starts from rest, so only half of the first
+                // segment's energy counts.
+                work *= 0.5f;
+            }
+        }
+        return kineticEnergyToVelocity(work);
+    }
+
+    private static float kineticEnergyToVelocity(float work) {
+        final float velocity = (float) Math.sqrt(2 * Math.abs(work));
+        return work < 0 ? -velocity : velocity;
+    }
+
+    private static float clamp(float value, float absMax) {
+        if (value > absMax) {
+            return absMax;
+        }
+        if (value < -absMax) {
+            return -absMax;
+        }
+        return value;
+    }
+}
@@ -18,15 +18,14 @@ package me.imid.swipebacklayout.lib;
 
 import android.content.Context;
 import android.support.v4.view.MotionEventCompat;
-import android.support.v4.view.VelocityTrackerCompat;
 import android.support.v4.view.ViewCompat;
-import android.support.v4.widget.ScrollerCompat;
 import android.view.MotionEvent;
-import android.view.VelocityTracker;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.view.animation.AnimationUtils;
 import android.view.animation.Interpolator;
+import android.widget.OverScroller;
 
 import java.util.Arrays;
 
@@ -107,6 +106,34 @@ public class ViewDragHelper {
 
     private static final int MAX_SETTLE_DURATION = 600; // ms
 
+    /**
+     * Number of pointers that can be tracked at the same time. Pointers going
+     * down while every slot is taken are ignored.
+     */
+    private static final int MAX_POINTERS = 10;
+
+    /**
+     * Deepest level below the checked view that {@link #canScroll} descends
+     * into.
+     */
+    private static final int MAX_SCROLL_CHECK_DEPTH = 32;
+
+    /**
+     * How far past the frame time a predicted drag position aims.
+     */
+    private static final int PREDICTION_LOOKAHEAD = 4; // ms
+
+    /**
+     * Upper bound of the extrapolation applied to a drag position.
+     */
+    private static final int MAX_PREDICTION_TIME = 8; // ms
+
+    /**
+     * No prediction is made once the newest sample is older than this, the
+     * pointer is assumed to rest.
+     */
+    private static final int PREDICTION_STALE_TIME = 25; // ms
+
     // Current drag state; idle, dragging or settling
     private int mDragState;
 
@@ -116,23 +143,28 @@ public class ViewDragHelper {
     // Last known position/pointer tracking
     private int mActivePointerId = INVALID_POINTER;
 
-    private float[] mInitialMotionX;
+    // Tracking slot of each pointer down, indexing the arrays below
+    private final PointerSlots mSlots = new PointerSlots(MAX_POINTERS);
 
-    private float[] mInitialMotionY;
+    private final float[] mInitialMotionX = new float[MAX_POINTERS];
 
-    private float[] mLastMotionX;
+    private final float[] mInitialMotionY = new float[MAX_POINTERS];
 
-    private float[] mLastMotionY;
+    private final float[] mLastMotionX = new float[MAX_POINTERS];
 
-    private int[] mInitialEdgeTouched;
+    private final float[] mLastMotionY = new float[MAX_POINTERS];
 
-    private int[] mEdgeDragsInProgress;
+    private final int[] mInitialEdgeTouched = new int[MAX_POINTERS];
 
-    private int[] mEdgeDragsLocked;
+    private final int[] mEdgeDragsInProgress = new int[MAX_POINTERS];
 
+    private final int[] mEdgeDragsLocked = new int[MAX_POINTERS];
+
+    // One bit per tracking slot currently holding a pointer that is down
     private int mPointersDown;
 
-    private VelocityTracker mVelocityTracker;
+    // Velocity of the pointer held by each tracking slot
+    private final VelocityEstimator[] mVelocityEstimators = new VelocityEstimator[MAX_POINTERS];
 
     private float mMaxVelocity;
 
@@ -142,7 +174,30 @@ public class ViewDragHelper {
 
     private int mTrackingEdges;
 
-    private ScrollerCompat mScroller;
+    private OverScroller mScroller;
+
+    private final SpringSettler mSpring = new SpringSettler();
+
+    // Whether settles use mSpring instead of mScroller
+    private boolean mSpringSettle;
+
+    // Whether the settle in progress is driven by mSpring
+    private boolean mSpringSettling;
+
+    // Duration of the scroller settle in progress, -1 for springs and flings
+    private int mSettleDuration = -1;
+
+    // Start of the scroller settle in progress, in the animation time base
+    private long mSettleStartTime;
+
+    // Whether the settle in progress only reports positions, something else
+    // moves the view
+    private boolean mSettleDetached;
+
+    // Position reported by a detached settle
+    private int mDetachedLeft;
+
+    private int mDetachedTop;
 
     private final Callback mCallback;
 
@@ -150,8 +205,47 @@ public class ViewDragHelper {
 
     private boolean mReleaseInProgress;
 
+    // Explicit stack used by canScroll to walk the hierarchy
+    private View[] mScrollCheckViews = new View[16];
+
+    private int[] mScrollCheckX = new int[16];
+
+    private int[] mScrollCheckY = new int[16];
+
+    private int[] mScrollCheckDepth = new int[16];
+
+    // Velocity of the release being dispatched before small values are
+    // dropped, zero for a cancelled stream
+    private float mReleaseXVelocity;
+
+    private float mReleaseYVelocity;
+
     private final ViewGroup mParentView;
 
+    // Whether drags are stored as pending positions instead of being applied
+    private boolean mDeferPositionUpdates;
+
+    // Whether the captured view has yet to reach the drag position
+    private boolean mPositionPending;
+
+    // Whether mDragLeft/mDragTop hold the position of a deferred drag
+    private boolean mDragPositionValid;
+
+    // Position the pointer dragged the captured view to, without prediction
+    private int mDragLeft;
+
+    private int mDragTop;
+
+    // Whether deferred drags are resampled at the frame time
+    private boolean mMotionPrediction;
+
+    // Whether the captured view is shown at a resampled position rather than
+    // at mDragLeft/mDragTop
+    private boolean mResampledPositionShown;
+
+    // Whether the captured view is moved through its translation
+    private boolean mMoveByTranslation;
+
     /**
      * A Callback is used as a communication channel with the ViewDragHelper
      * back to the parent view using it. <code>on*</code>methods are invoked on
@@ -360,7 +454,7 @@ public class ViewDragHelper {
     /**
      * Interpolator defining the animation curve for mScroller
      */
-    private static final Interpolator sInterpolator = new Interpolator() {
+    static final Interpolator sInterpolator = new Interpolator() {
         public float getInterpolation(float t) {
             t -= 1.0f;
             return t * t * t * t * t + 1.0f;
@@ -426,7 +520,11 @@ public class ViewDragHelper {
         mTouchSlop = vc.getScaledTouchSlop();
         mMaxVelocity = vc.getScaledMaximumFlingVelocity();
         mMinVelocity = vc.getScaledMinimumFlingVelocity();
-        mScroller = ScrollerCompat.create(context, sInterpolator);
+        mScroller = new OverScroller(context, sInterpolator);
+        mSpring.setOvershootClamping(true);
+        for (int i = 0; i < MAX_POINTERS; i++) {
+            mVelocityEstimators[i] = new VelocityEstimator();
+        }
     }
 
     /**
@@ -476,6 +574,219 @@ public class ViewDragHelper {
         return mMinVelocity;
     }
 
+    /**
+     * Set the strategy used to estimate pointer velocities for flings and
+     * releases.
+     *
+     * @param strategy One of {@link VelocityEstimator#STRATEGY_LSQ2} or
+     *                 {@link VelocityEstimator#STRATEGY_IMPULSE}
+     */
+    public void setVelocityStrategy(int strategy) {
+        for (int i = 0; i < MAX_POINTERS; i++) {
+            mVelocityEstimators[i].setStrategy(strategy);
+        }
+    }
+
+    /**
+     * Choose whether drag motion moves the captured view right away or is
+     * only recorded. When deferred, the parent must call
+     * {@link #applyPendingPosition()} once per frame while
+     * {@link #hasPendingPosition()} returns true; several input events
+     * arriving within one frame then cause a single move and a single
+     * {@link Callback#onViewPositionChanged(View, int, int, int, int)}.
+     *
+     * @param defer true to defer position updates to the next frame
+     */
+    public void setDeferPositionUpdates(boolean defer) {
+        if (!defer) {
+            flushDragPosition();
+        }
+        mDeferPositionUpdates = defer;
+    }
+
+    /**
+     * Choose the engine used by {@link #settleCapturedViewAt(int, int)} and
+     * {@link #smoothSlideViewTo(View, int, int)}. By default a scroller runs
+     * an interpolated animation whose duration is derived from the release
+     * velocity. With the spring enabled the view instead follows a critically
+     * damped spring that starts with the release velocity, does not depend on
+     * frame timing and smoothly follows a target changed mid-flight.
+     * {@link #flingCapturedView(int, int, int, int)} always uses the scroller.
+     *
+     * @param enabled true to settle with a spring
+     * @see SpringSettler
+     */
+    public void setSpringSettleEnabled(boolean enabled) {
+        mSpringSettle = enabled;
+    }
+
+    /**
+     * Set the stiffness of the spring used when spring settling is enabled.
+     *
+     * @param stiffness Positive stiffness
+     * @see SpringSettler#setStiffness(float)
+     */
+    public void setSpringStiffness(float stiffness) {
+        mSpring.setStiffness(stiffness);
+    }
+
+    /**
+     * Choose how the captured view is moved. By default its layout position
+     * is offset. When moving by translation, the layout bounds of the view
+     * never change and positions passed to and reported by this helper are
+     * its layout position plus its translation, so a layout pass during a
+     * drag does not undo the movement. Change this only while no view is
+     * captured.
+     *
+     * @param enabled true to move the captured view through translationX/Y
+     */
+    public void setMoveByTranslation(boolean enabled) {
+        mMoveByTranslation = enabled;
+    }
+
+    /**
+     * Enable short-horizon motion prediction for deferred drags. When
+     * enabled, {@link #applyPendingPosition(long)} places the captured view
+     * where the pointer is expected to be slightly after the frame time,
+     * based on its recent velocity, instead of where the last touch event
+     * reported it. The extrapolation is bounded to a few milliseconds and is
+     * skipped when the pointer reverses or rests. Touch samples newer than
+     * that time are interpolated with the previous one instead. On release
+     * the view is not moved back to the raw pointer position.
+     *
+     * @param enabled true to resample drag positions
+     * @see #setDeferPositionUpdates(boolean)
+     */
+    public void setMotionPredictionEnabled(boolean enabled) {
+        mMotionPrediction = enabled;
+    }
+
+    /**
+     * @return true if the captured view has not reached the position of a
+     * deferred drag yet
+     * @see #setDeferPositionUpdates(boolean)
+     */
+    public boolean hasPendingPosition() {
+        return mPositionPending;
+    }
+
+    /**
+     * Move the captured view to the position recorded by the latest deferred
+     * drag, without any prediction, and notify the callback.
+     *
+     * @return true if there was a pending position to apply
+     * @see #setDeferPositionUpdates(boolean)
+     */
+    public boolean applyPendingPosition() {
+        if (!mPositionPending) {
+            return false;
+        }
+        mPositionPending = false;
+        mResampledPositionShown = false;
+        moveCapturedViewTo(mDragLeft, mDragTop);
+        return true;
+    }
+
+    /**
+     * Move the captured view to the position recorded by the latest deferred
+     * drag for a frame starting at the given time and notify the callback.
+     * With motion prediction enabled the position is resampled at a time
+     * slightly ahead of the frame: extrapolated from the velocity when the
+     * newest touch sample is older than that, interpolated between the two
+     * newest samples when it is more recent. {@link #hasPendingPosition()}
+     * keeps returning true until the view has caught up with the pointer.
+     *
+     * @param frameTimeNanos Start time of the frame, in the
+     *                       {@link System#nanoTime()} time base
+     * @return true if there was a pending position to apply
+     * @see #setMotionPredictionEnabled(boolean)
+     */
+    public boolean applyPendingPosition(long frameTimeNanos) {
+        if (!mPositionPending) {
+            return false;
+        }
+        int left = mDragLeft;
+        int top = mDragTop;
+        final int slot = mSlots.find(mActivePointerId);
+        if (mMotionPrediction && mDragState == STATE_DRAGGING && slot >= 0) {
+            // Event times are uptime millis, which share the monotonic clock
+            // with the frame time.
+            final VelocityEstimator estimator = mVelocityEstimators[slot];
+            final long dt = frameTimeNanos / 1000000 + PREDICTION_LOOKAHEAD
+                    - estimator.getLatestEventTime();
+            int px = 0;
+            int py = 0;
+            if (dt > 0 && dt <= PREDICTION_STALE_TIME) {
+                final long time = Math.min(dt, MAX_PREDICTION_TIME);
+                estimator.computeCurrentVelocity(1000, mMaxVelocity);
+                px = predictDistance(estimator.getXVelocity(),
+                        estimator.getLatestDeltaX(), time);
+                py = predictDistance(estimator.getYVelocity(),
+                        estimator.getLatestDeltaY(), time);
+            } else if (dt < 0 && estimator.getLatestInterval() > 0) {
+                // The newest sample is past the sample time, place the view
+                // between it and the one before.
+                final float back = Math.min(1f, -dt / (float) estimator.getLatestInterval());
+                px = -Math.round(estimator.getLatestDeltaX() * back);
+                py = -Math.round(estimator.getLatestDeltaY() * back);
+            }
+            if (px != 0) {
+                left = mCallback.clampViewPositionHorizontal(mCapturedView, left + px, px);
+            }
+            if (py != 0) {
+                top = mCallback.clampViewPositionVertical(mCapturedView, top + py, py);
+            }
+        }
+        // Keep refreshing while the view is off the pointer position, so it
+        // catches up once the pointer rests.
+        mPositionPending = left != mDragLeft || top != mDragTop;
+        mResampledPositionShown = mPositionPending;
+        moveCapturedViewTo(left, top);
+        return true;
+    }
+
+    /**
+     * Distance a pointer is expected to cover in the given time.
+     *
+     * @param velocity    Velocity in pixels per second
+     * @param latestDelta Movement between the two newest samples
+     * @param time        Time to extrapolate over in milliseconds
+     * @return the distance, bounded by the touch slop
+     */
+    private int predictDistance(float velocity, float latestDelta, long time) {
+        if (velocity == 0 || latestDelta == 0 || velocity > 0 != latestDelta > 0) {
+            // The pointer is reversing, extrapolating would overshoot.
+            return 0;
+        }
+        final int distance = (int) (velocity * time / 1000);
+        return Math.max(-mTouchSlop, Math.min(mTouchSlop, distance));
+    }
+
+    /**
+     * Apply the deferred drag position, if any, and stop treating it as the
+     * position of the captured view.
+     */
+    private void flushDragPosition() {
+        if (mResampledPositionShown) {
+            // Going to the raw pointer position now would be a visible jump,
+            // what follows starts from where the view was last shown.
+            mResampledPositionShown = false;
+            mPositionPending = false;
+        } else {
+            applyPendingPosition();
+        }
+        mDragPositionValid = false;
+    }
+
+    private void moveCapturedViewTo(int left, int top) {
+        final int dx = left - getViewLeft(mCapturedView);
+        final int dy = top - getViewTop(mCapturedView);
+        offsetView(mCapturedView, dx, dy);
+        if (dx != 0 || dy != 0) {
+            mCallback.onViewPositionChanged(mCapturedView, left, top, dx, dy);
+        }
+    }
+
     /**
      * Retrieve the current drag state of this helper. This will return one of
      * {@link #STATE_IDLE}, {@link #STATE_DRAGGING} or {@link #STATE_SETTLING}.
@@ -544,6 +855,14 @@ public class ViewDragHelper {
                     + "of the ViewDragHelper's tracked parent view (" + mParentView + ")");
         }
 
+        // Catching a settling view stops it where it is and keeps its
+        // momentum as the starting velocity of the drag.
+        final boolean caught = mDragState == STATE_SETTLING && childView == mCapturedView;
+        if (caught) {
+            carrySettleVelocity(activePointerId);
+            stopSettle();
+        }
+        flushDragPosition();
         mCapturedView = childView;
         mActivePointerId = activePointerId;
         mCallback.onViewCaptured(childView, activePointerId);
@@ -582,26 +901,17 @@ public class ViewDragHelper {
     public void cancel() {
         mActivePointerId = INVALID_POINTER;
         clearMotionHistory();
-
-        if (mVelocityTracker != null) {
-            mVelocityTracker.recycle();
-            mVelocityTracker = null;
-        }
     }
 
     /**
-     * {@link #cancel()}, but also abort all motion in progress and snap to the
-     * end of any animation.
+     * {@link #cancel()}, but also abort all motion in progress. A settling
+     * view stays where the last frame put it.
      */
     public void abort() {
         cancel();
+        flushDragPosition();
         if (mDragState == STATE_SETTLING) {
-            final int oldX = mScroller.getCurrX();
-            final int oldY = mScroller.getCurrY();
-            mScroller.abortAnimation();
-            final int newX = mScroller.getCurrX();
-            final int newY = mScroller.getCurrY();
-            mCallback.onViewPositionChanged(mCapturedView, newX, newY, newX - oldX, newY - oldY);
+            stopSettle();
         }
         setDragState(STATE_IDLE);
     }
@@ -650,9 +960,8 @@ public class ViewDragHelper {
                     + "Callback#onViewReleased");
         }
 
-        return forceSettleCapturedViewAt(finalLeft, finalTop,
-                (int) VelocityTrackerCompat.getXVelocity(mVelocityTracker, mActivePointerId),
-                (int) VelocityTrackerCompat.getYVelocity(mVelocityTracker, mActivePointerId));
+        return forceSettleCapturedViewAt(finalLeft, finalTop, (int) getActiveXVelocity(),
+                (int) getActiveYVelocity());
     }
 
     /**
@@ -666,20 +975,40 @@ public class ViewDragHelper {
      * {@link #continueSettling(boolean)} calls
      */
     private boolean forceSettleCapturedViewAt(int finalLeft, int finalTop, int xvel, int yvel) {
-        final int startLeft = mCapturedView.getLeft();
-        final int startTop = mCapturedView.getTop();
+        reattachSettle();
+        mSettleDuration = -1;
+        final int startLeft = getViewLeft(mCapturedView);
+        final int startTop = getViewTop(mCapturedView);
         final int dx = finalLeft - startLeft;
         final int dy = finalTop - startTop;
 
         if (dx == 0 && dy == 0) {
             // Nothing to do. Send callbacks, be done.
-            mScroller.abortAnimation();
+            reattachSettle();
+            abortSettle();
             setDragState(STATE_IDLE);
             return false;
         }
 
+        if (mSpringSettle) {
+            if (mSpringSettling && mDragState == STATE_SETTLING) {
+                // Keep the momentum of the settle in progress.
+                mSpring.retarget(finalLeft, finalTop);
+            } else {
+                mScroller.abortAnimation();
+                mSpring.start(startLeft, startTop, finalLeft, finalTop, xvel, yvel);
+            }
+            mSpringSettling = true;
+            setDragState(STATE_SETTLING);
+            return true;
+        }
+
+        mSpring.forceFinished();
+        mSpringSettling = false;
         final int duration = computeSettleDuration(mCapturedView, dx, dy, xvel, yvel);
         mScroller.startScroll(startLeft, startTop, dx, dy, duration);
+        mSettleDuration = duration;
+        mSettleStartTime = AnimationUtils.currentAnimationTimeMillis();
 
         setDragState(STATE_SETTLING);
         return true;
@@ -788,9 +1117,12 @@ public class ViewDragHelper {
                     + "Callback#onViewReleased");
         }
 
-        mScroller.fling(mCapturedView.getLeft(), mCapturedView.getTop(),
-                (int) VelocityTrackerCompat.getXVelocity(mVelocityTracker, mActivePointerId),
-                (int) VelocityTrackerCompat.getYVelocity(mVelocityTracker, mActivePointerId),
+        reattachSettle();
+        mSettleDuration = -1;
+        mSpring.forceFinished();
+        mSpringSettling = false;
+        mScroller.fling(getViewLeft(mCapturedView), getViewTop(mCapturedView),
+                (int) getActiveXVelocity(), (int) getActiveYVelocity(),
                 minLeft, maxLeft, minTop, maxTop);
 
         setDragState(STATE_SETTLING);
@@ -809,24 +1141,25 @@ public class ViewDragHelper {
      */
     public boolean continueSettling(boolean deferCallbacks) {
         if (mDragState == STATE_SETTLING) {
-            boolean keepGoing = mScroller.computeScrollOffset();
-            final int x = mScroller.getCurrX();
-            final int y = mScroller.getCurrY();
-            final int dx = x - mCapturedView.getLeft();
-            final int dy = y - mCapturedView.getTop();
-
-            if (dx != 0) {
-                mCapturedView.offsetLeftAndRight(dx);
-            }
-            if (dy != 0) {
-                mCapturedView.offsetTopAndBottom(dy);
+            boolean keepGoing = mSpringSettling
+                    ? mSpring.computeOffset() : mScroller.computeScrollOffset();
+            final int x = getSettleX();
+            final int y = getSettleY();
+            final int dx = x - (mSettleDetached ? mDetachedLeft : getViewLeft(mCapturedView));
+            final int dy = y - (mSettleDetached ? mDetachedTop : getViewTop(mCapturedView));
+            if (mSettleDetached) {
+                mDetachedLeft = x;
+                mDetachedTop = y;
+            } else {
+                offsetView(mCapturedView, dx, dy);
             }
 
             if (dx != 0 || dy != 0) {
                 mCallback.onViewPositionChanged(mCapturedView, x, y, dx, dy);
             }
 
-            if (keepGoing && x == mScroller.getFinalX() && y == mScroller.getFinalY()) {
+            if (keepGoing && !mSpringSettling
+                    && x == mScroller.getFinalX() && y == mScroller.getFinalY()) {
                 // Close enough. The interpolator/scroller might think we're
                 // still moving
                 // but the user sure doesn't.
@@ -835,6 +1168,8 @@ public class ViewDragHelper {
             }
 
             if (!keepGoing) {
+                // Whatever moved the view, it ends where the settle ends.
+                reattachSettle();
                 if (deferCallbacks) {
                     mParentView.post(mSetIdleRunnable);
                 } else {
@@ -846,16 +1181,138 @@ public class ViewDragHelper {
         return mDragState == STATE_SETTLING;
     }
 
+    private int getSettleX() {
+        return mSpringSettling ? mSpring.getCurrX() : mScroller.getCurrX();
+    }
+
+    private int getSettleY() {
+        return mSpringSettling ? mSpring.getCurrY() : mScroller.getCurrY();
+    }
+
+    /**
+     * Stop the settle engine in use and move it to its final position.
+     */
+    private void abortSettle() {
+        if (mSpringSettling) {
+            mSpring.abortAnimation();
+        } else {
+            mScroller.abortAnimation();
+        }
+    }
+
+    /**
+     * @return Duration in milliseconds of the settle in progress, or -1 if it
+     * has no fixed duration because it is a spring or a fling
+     */
+    public int getSettleDuration() {
+        return mDragState == STATE_SETTLING ? mSettleDuration : -1;
+    }
+
+    /**
+     * Stop moving the captured view for the settle in progress while still
+     * computing it, so something else, such as an animator running off the UI
+     * thread, can move the view along the same path. Positions keep being
+     * reported to {@link Callback#onViewPositionChanged(View, int, int, int, int)}.
+     * The view is put at the settle position again when the settle ends or is
+     * interrupted; whatever moves it must be stopped before that.
+     */
+    public void detachSettleFromView() {
+        if (mDragState != STATE_SETTLING || mSettleDetached) {
+            return;
+        }
+        mSettleDetached = true;
+        mDetachedLeft = getViewLeft(mCapturedView);
+        mDetachedTop = getViewTop(mCapturedView);
+    }
+
+    /**
+     * Move the view back under control of this helper, at the position of a
+     * detached settle.
+     */
+    private void reattachSettle() {
+        if (!mSettleDetached) {
+            return;
+        }
+        mSettleDetached = false;
+        offsetView(mCapturedView, mDetachedLeft - getViewLeft(mCapturedView),
+                mDetachedTop - getViewTop(mCapturedView));
+    }
+
+    /**
+     * Stop the settle engine in use without moving it to its final position.
+     */
+    private void stopSettle() {
+        reattachSettle();
+        if (mSpringSettling) {
+            mSpring.forceFinished();
+        } else {
+            mScroller.forceFinished(true);
+        }
+    }
+
+    /**
+     * Seed the velocity of a pointer with the current velocity of the settle
+     * in progress.
+     */
+    private void carrySettleVelocity(int pointerId) {
+        final int slot = mSlots.find(pointerId);
+        if (slot < 0) {
+            return;
+        }
+        final float xvel;
+        final float yvel;
+        if (mSpringSettling) {
+            xvel = mSpring.getXVelocity();
+            yvel = mSpring.getYVelocity();
+        } else if (mSettleDuration > 0) {
+            // The scroller reports no velocity for startScroll, take the
+            // slope of the interpolated curve at the current time.
+            final float t = Math.min(1f, Math.max(0f,
+                    (AnimationUtils.currentAnimationTimeMillis() - mSettleStartTime)
+                            / (float) mSettleDuration));
+            final float slope = interpolationSlope(t) * 1000f / mSettleDuration;
+            xvel = (mScroller.getFinalX() - mScroller.getStartX()) * slope;
+            yvel = (mScroller.getFinalY() - mScroller.getStartY()) * slope;
+        } else {
+            // A fling only reports a speed, it heads for its final position.
+            final float speed = mScroller.getCurrVelocity();
+            final int dx = mScroller.getFinalX() - mScroller.getCurrX();
+            final int dy = mScroller.getFinalY() - mScroller.getCurrY();
+            final float distance = (float) Math.sqrt(dx * dx + dy * dy);
+            xvel = distance > 0 ? speed * dx / distance : 0;
+            yvel = distance > 0 ? speed * dy / distance : 0;
+        }
+        mVelocityEstimators[slot].seedVelocity(xvel, yvel);
+    }
+
+    /**
+     * @return Derivative of {@link #sInterpolator} at t, by central difference
+     */
+    private static float interpolationSlope(float t) {
+        final float h = 0.001f;
+        final float t0 = Math.max(0f, t - h);
+        final float t1 = Math.min(1f, t + h);
+        return (sInterpolator.getInterpolation(t1) - sInterpolator.getInterpolation(t0))
+                / (t1 - t0);
+    }
+
     /**
      * Like all callback events this must happen on the UI thread, but release
      * involves some extra semantics. During a release (mReleaseInProgress) is
      * the only time it is valid to call {@link #settleCapturedViewAt(int, int)}
      * or {@link #flingCapturedView(int, int, int, int)}.
      */
-    private void dispatchViewReleased(float xvel, float yvel) {
+    private void dispatchViewReleased(float xvel, float yvel, float rawXVel, float rawYVel) {
+        // The callback and any settle need to start from where the view
+        // really is.
+        flushDragPosition();
         mReleaseInProgress = true;
+        mReleaseXVelocity = rawXVel;
+        mReleaseYVelocity = rawYVel;
         mCallback.onViewReleased(mCapturedView, xvel, yvel);
         mReleaseInProgress = false;
+        mReleaseXVelocity = 0;
+        mReleaseYVelocity = 0;
 
         if (mDragState == STATE_DRAGGING) {
             // onViewReleased didn't call a method that would have changed this.
@@ -865,9 +1322,10 @@ public class ViewDragHelper {
     }
 
     private void clearMotionHistory() {
-        if (mInitialMotionX == null) {
+        if (mPointersDown == 0) {
             return;
         }
+        mSlots.clear();
         Arrays.fill(mInitialMotionX, 0);
         Arrays.fill(mInitialMotionY, 0);
         Arrays.fill(mLastMotionX, 0);
@@ -875,72 +1333,125 @@ public class ViewDragHelper {
         Arrays.fill(mInitialEdgeTouched, 0);
         Arrays.fill(mEdgeDragsInProgress, 0);
         Arrays.fill(mEdgeDragsLocked, 0);
+        for (int i = 0; i < MAX_POINTERS; i++) {
+            mVelocityEstimators[i].clear();
+        }
         mPointersDown = 0;
     }
 
     private void clearMotionHistory(int pointerId) {
-        if (mInitialMotionX == null) {
+        final int slot = mSlots.find(pointerId);
+        if (slot < 0) {
             return;
         }
-        mInitialMotionX[pointerId] = 0;
-        mInitialMotionY[pointerId] = 0;
-        mLastMotionX[pointerId] = 0;
-        mLastMotionY[pointerId] = 0;
-        mInitialEdgeTouched[pointerId] = 0;
-        mEdgeDragsInProgress[pointerId] = 0;
-        mEdgeDragsLocked[pointerId] = 0;
-        mPointersDown &= ~(1 << pointerId);
-    }
-
-    private void ensureMotionHistorySizeForId(int pointerId) {
-        if (mInitialMotionX == null || mInitialMotionX.length <= pointerId) {
-            float[] imx = new float[pointerId + 1];
-            float[] imy = new float[pointerId + 1];
-            float[] lmx = new float[pointerId + 1];
-            float[] lmy = new float[pointerId + 1];
-            int[] iit = new int[pointerId + 1];
-            int[] edip = new int[pointerId + 1];
-            int[] edl = new int[pointerId + 1];
-
-            if (mInitialMotionX != null) {
-                System.arraycopy(mInitialMotionX, 0, imx, 0, mInitialMotionX.length);
-                System.arraycopy(mInitialMotionY, 0, imy, 0, mInitialMotionY.length);
-                System.arraycopy(mLastMotionX, 0, lmx, 0, mLastMotionX.length);
-                System.arraycopy(mLastMotionY, 0, lmy, 0, mLastMotionY.length);
-                System.arraycopy(mInitialEdgeTouched, 0, iit, 0, mInitialEdgeTouched.length);
-                System.arraycopy(mEdgeDragsInProgress, 0, edip, 0, mEdgeDragsInProgress.length);
-                System.arraycopy(mEdgeDragsLocked, 0, edl, 0, mEdgeDragsLocked.length);
-            }
+        mSlots.release(slot);
+        mInitialMotionX[slot] = 0;
+        mInitialMotionY[slot] = 0;
+        mLastMotionX[slot] = 0;
+        mLastMotionY[slot] = 0;
+        mInitialEdgeTouched[slot] = 0;
+        mEdgeDragsInProgress[slot] = 0;
+        mEdgeDragsLocked[slot] = 0;
+        mVelocityEstimators[slot].clear();
+        mPointersDown &= ~(1 << slot);
+    }
 
-            mInitialMotionX = imx;
-            mInitialMotionY = imy;
-            mLastMotionX = lmx;
-            mLastMotionY = lmy;
-            mInitialEdgeTouched = iit;
-            mEdgeDragsInProgress = edip;
-            mEdgeDragsLocked = edl;
+    private void saveInitialMotion(float x, float y, int pointerId, long eventTime) {
+        final int slot = mSlots.obtain(pointerId);
+        if (slot < 0) {
+            return;
         }
+        mVelocityEstimators[slot].clear();
+        mVelocityEstimators[slot].addMovement(eventTime, x, y);
+        mInitialMotionX[slot] = mLastMotionX[slot] = x;
+        mInitialMotionY[slot] = mLastMotionY[slot] = y;
+        mInitialEdgeTouched[slot] = getEdgeTouched((int) x, (int) y);
+        mEdgeDragsInProgress[slot] = 0;
+        mEdgeDragsLocked[slot] = 0;
+        mPointersDown |= 1 << slot;
     }
 
-    private void saveInitialMotion(float x, float y, int pointerId) {
-        ensureMotionHistorySizeForId(pointerId);
-        mInitialMotionX[pointerId] = mLastMotionX[pointerId] = x;
-        mInitialMotionY[pointerId] = mLastMotionY[pointerId] = y;
-        mInitialEdgeTouched[pointerId] = getEdgeTouched((int) x, (int) y);
-        mPointersDown |= 1 << pointerId;
+    private void saveLastMotion(MotionEvent ev) {
+        final int pointerCount = MotionEventCompat.getPointerCount(ev);
+        for (int i = 0; i < pointerCount; i++) {
+            final int slot = mSlots.find(MotionEventCompat.getPointerId(ev, i));
+            if (slot < 0) {
+                continue;
+            }
+            mLastMotionX[slot] = MotionEventCompat.getX(ev, i);
+            mLastMotionY[slot] = MotionEventCompat.getY(ev, i);
+        }
     }
 
-    private void saveLastMotion(MotionEvent ev) {
+    /**
+     * Feed every sample of the event, including the historical ones batched
+     * into a move, to the velocity estimators of the tracked pointers.
+     */
+    private void addMovement(MotionEvent ev) {
         final int pointerCount = MotionEventCompat.getPointerCount(ev);
+        final int historySize = ev.getHistorySize();
         for (int i = 0; i < pointerCount; i++) {
-            final int pointerId = MotionEventCompat.getPointerId(ev, i);
-            final float x = MotionEventCompat.getX(ev, i);
-            final float y = MotionEventCompat.getY(ev, i);
-            mLastMotionX[pointerId] = x;
-            mLastMotionY[pointerId] = y;
+            final int slot = mSlots.find(MotionEventCompat.getPointerId(ev, i));
+            if (slot < 0) {
+                continue;
+            }
+            final VelocityEstimator estimator = mVelocityEstimators[slot];
+            for (int h = 0; h < historySize; h++) {
+                estimator.addMovement(ev.getHistoricalEventTime(h), ev.getHistoricalX(i, h),
+                        ev.getHistoricalY(i, h));
+            }
+            estimator.addMovement(ev.getEventTime(), MotionEventCompat.getX(ev, i),
+                    MotionEventCompat.getY(ev, i));
         }
     }
 
+    /**
+     * @return Within {@link Callback#onViewReleased(View, float, float)}, the
+     * X velocity of the release in pixels per second, before velocities below
+     * the minimum fling velocity are dropped. 0 when the touch stream was
+     * cancelled, and outside of a release.
+     */
+    public float getReleaseXVelocity() {
+        return mReleaseXVelocity;
+    }
+
+    /**
+     * @return Within {@link Callback#onViewReleased(View, float, float)}, the
+     * Y velocity of the release in pixels per second, before velocities below
+     * the minimum fling velocity are dropped. 0 when the touch stream was
+     * cancelled, and outside of a release.
+     */
+    public float getReleaseYVelocity() {
+        return mReleaseYVelocity;
+    }
+
+    /**
+     * @return X velocity of the active pointer as of the last velocity
+     * computation, in pixels per second
+     */
+    private float getActiveXVelocity() {
+        final int slot = mSlots.find(mActivePointerId);
+        return slot >= 0 ? mVelocityEstimators[slot].getXVelocity() : 0;
+    }
+
+    /**
+     * @return Y velocity of the active pointer as of the last velocity
+     * computation, in pixels per second
+     */
+    private float getActiveYVelocity() {
+        final int slot = mSlots.find(mActivePointerId);
+        return slot >= 0 ? mVelocityEstimators[slot].getYVelocity() : 0;
+    }
+
+    /**
+     * @return the edges initially touched by the given pointer, or 0 if the
+     * pointer is not being tracked
+     */
+    private int getInitialEdgeTouched(int pointerId) {
+        final int slot = mSlots.find(pointerId);
+        return slot >= 0 ? mInitialEdgeTouched[slot] : 0;
+    }
+
     /**
      * Check if the given pointer ID represents a pointer that is currently down
      * (to the best of the ViewDragHelper's knowledge).
@@ -957,7 +1468,7 @@ public class ViewDragHelper {
      * @return true if the pointer with the given ID is still down
      */
     public boolean isPointerDown(int pointerId) {
-        return (mPointersDown & 1 << pointerId) != 0;
+        return mSlots.find(pointerId) >= 0;
     }
 
     void setDragState(int state) {
@@ -995,6 +1506,10 @@ public class ViewDragHelper {
 
     /**
      * Tests scrollability within child views of v given a delta of dx.
+     * <p>
+     * The views under (x, y) are walked without recursion, at most
+     * {@link #MAX_SCROLL_CHECK_DEPTH} levels below v, topmost child first.
+     * </p>
      *
      * @param v      View to test for horizontal scrollability
      * @param checkV Whether the view v passed should itself be checked for
@@ -1006,31 +1521,58 @@ public class ViewDragHelper {
      * @return true if child views of v can be scrolled by delta of dx.
      */
     protected boolean canScroll(View v, boolean checkV, int dx, int dy, int x, int y) {
-        if (v instanceof ViewGroup) {
-            final ViewGroup group = (ViewGroup) v;
-            final int scrollX = v.getScrollX();
-            final int scrollY = v.getScrollY();
-            final int count = group.getChildCount();
-            // Count backwards - let topmost views consume scroll distance
-            // first.
-            for (int i = count - 1; i >= 0; i--) {
-                // TODO: Add versioned support here for transformed views.
-                // This will not work for transformed views in Honeycomb+
-                final View child = group.getChildAt(i);
-                if (x + scrollX >= child.getLeft()
-                        && x + scrollX < child.getRight()
-                        && y + scrollY >= child.getTop()
-                        && y + scrollY < child.getBottom()
-                        && canScroll(child, true, dx, dy, x + scrollX - child.getLeft(), y
-                        + scrollY - child.getTop())) {
-                    return true;
+        int size = pushScrollCheck(0, v, x, y, 0);
+        boolean found = false;
+        while (size > 0 && !found) {
+            size--;
+            final View view = mScrollCheckViews[size];
+            final int vx = mScrollCheckX[size];
+            final int vy = mScrollCheckY[size];
+            final int depth = mScrollCheckDepth[size];
+            mScrollCheckViews[size] = null;
+
+            if ((depth > 0 || checkV)
+                    && (ViewCompat.canScrollHorizontally(view, -dx)
+                    || ViewCompat.canScrollVertically(view, -dy))) {
+                found = true;
+            } else if (view instanceof ViewGroup && depth < MAX_SCROLL_CHECK_DEPTH) {
+                final ViewGroup group = (ViewGroup) view;
+                final int scrollX = view.getScrollX();
+                final int scrollY = view.getScrollY();
+                final int count = group.getChildCount();
+                // Push in drawing order so the topmost child is checked first.
+                for (int i = 0; i < count; i++) {
+                    // TODO: Add versioned support here for transformed views.
+                    // This will not work for transformed views in Honeycomb+
+                    final View child = group.getChildAt(i);
+                    if (vx + scrollX >= child.getLeft()
+                            && vx + scrollX < child.getRight()
+                            && vy + scrollY >= child.getTop()
+                            && vy + scrollY < child.getBottom()) {
+                        size = pushScrollCheck(size, child, vx + scrollX - child.getLeft(),
+                                vy + scrollY - child.getTop(), depth + 1);
+                    }
                 }
             }
         }
+        // Don't hold on to views left on the stack.
+        Arrays.fill(mScrollCheckViews, 0, size, null);
+        return found;
+    }
 
-        return checkV
-                && (ViewCompat.canScrollHorizontally(v, -dx) || ViewCompat.canScrollVertically(v,
-                -dy));
+    private int pushScrollCheck(int size, View v, int x, int y, int depth) {
+        if (size == mScrollCheckViews.length) {
+            final int capacity = size * 2;
+            mScrollCheckViews = Arrays.copyOf(mScrollCheckViews, capacity);
+            mScrollCheckX = Arrays.copyOf(mScrollCheckX, capacity);
+            mScrollCheckY = Arrays.copyOf(mScrollCheckY, capacity);
+            mScrollCheckDepth = Arrays.copyOf(mScrollCheckDepth, capacity);
+        }
+        mScrollCheckViews[size] = v;
+        mScrollCheckX[size] = x;
+        mScrollCheckY[size] = y;
+        mScrollCheckDepth[size] = depth;
+        return size + 1;
     }
 
     /**
@@ -1052,17 +1594,14 @@ public class ViewDragHelper {
             cancel();
         }
 
-        if (mVelocityTracker == null) {
-            mVelocityTracker = VelocityTracker.obtain();
-        }
-        mVelocityTracker.addMovement(ev);
+        addMovement(ev);
 
         switch (action) {
             case MotionEvent.ACTION_DOWN: {
                 final float x = ev.getX();
                 final float y = ev.getY();
                 final int pointerId = MotionEventCompat.getPointerId(ev, 0);
-                saveInitialMotion(x, y, pointerId);
+                saveInitialMotion(x, y, pointerId, ev.getEventTime());
 
                 final View toCapture = findTopChildUnder((int) x, (int) y);
 
@@ -1071,7 +1610,7 @@ public class ViewDragHelper {
                     tryCaptureViewForDrag(toCapture, pointerId);
                 }
 
-                final int edgesTouched = mInitialEdgeTouched[pointerId];
+                final int edgesTouched = getInitialEdgeTouched(pointerId);
                 if ((edgesTouched & mTrackingEdges) != 0) {
                     mCallback.onEdgeTouched(edgesTouched & mTrackingEdges, pointerId);
                 }
@@ -1083,11 +1622,11 @@ public class ViewDragHelper {
                 final float x = MotionEventCompat.getX(ev, actionIndex);
                 final float y = MotionEventCompat.getY(ev, actionIndex);
 
-                saveInitialMotion(x, y, pointerId);
+                saveInitialMotion(x, y, pointerId, ev.getEventTime());
 
                 // A ViewDragHelper can only manipulate one view at a time.
                 if (mDragState == STATE_IDLE) {
-                    final int edgesTouched = mInitialEdgeTouched[pointerId];
+                    final int edgesTouched = getInitialEdgeTouched(pointerId);
                     if ((edgesTouched & mTrackingEdges) != 0) {
                         mCallback.onEdgeTouched(edgesTouched & mTrackingEdges, pointerId);
                     }
@@ -1107,12 +1646,16 @@ public class ViewDragHelper {
                 final int pointerCount = MotionEventCompat.getPointerCount(ev);
                 for (int i = 0; i < pointerCount; i++) {
                     final int pointerId = MotionEventCompat.getPointerId(ev, i);
+                    final int slot = mSlots.find(pointerId);
+                    if (slot < 0) {
+                        continue;
+                    }
                     final float x = MotionEventCompat.getX(ev, i);
                     final float y = MotionEventCompat.getY(ev, i);
-                    final float dx = x - mInitialMotionX[pointerId];
-                    final float dy = y - mInitialMotionY[pointerId];
+                    final float dx = x - mInitialMotionX[slot];
+                    final float dy = y - mInitialMotionY[slot];
 
-                    reportNewEdgeDrags(dx, dy, pointerId);
+                    reportNewEdgeDrags(dx, dy, slot);
                     if (mDragState == STATE_DRAGGING) {
                         // Callback might have started an edge drag
                         break;
@@ -1161,10 +1704,7 @@ public class ViewDragHelper {
             cancel();
         }
 
-        if (mVelocityTracker == null) {
-            mVelocityTracker = VelocityTracker.obtain();
-        }
-        mVelocityTracker.addMovement(ev);
+        addMovement(ev);
 
         switch (action) {
             case MotionEvent.ACTION_DOWN: {
@@ -1173,7 +1713,7 @@ public class ViewDragHelper {
                 final int pointerId = MotionEventCompat.getPointerId(ev, 0);
                 final View toCapture = findTopChildUnder((int) x, (int) y);
 
-                saveInitialMotion(x, y, pointerId);
+                saveInitialMotion(x, y, pointerId, ev.getEventTime());
 
                 // Since the parent is already directly processing this touch
                 // event,
@@ -1181,7 +1721,7 @@ public class ViewDragHelper {
                 // Start immediately if possible.
                 tryCaptureViewForDrag(toCapture, pointerId);
 
-                final int edgesTouched = mInitialEdgeTouched[pointerId];
+                final int edgesTouched = getInitialEdgeTouched(pointerId);
                 if ((edgesTouched & mTrackingEdges) != 0) {
                     mCallback.onEdgeTouched(edgesTouched & mTrackingEdges, pointerId);
                 }
@@ -1193,7 +1733,7 @@ public class ViewDragHelper {
                 final float x = MotionEventCompat.getX(ev, actionIndex);
                 final float y = MotionEventCompat.getY(ev, actionIndex);
 
-                saveInitialMotion(x, y, pointerId);
+                saveInitialMotion(x, y, pointerId, ev.getEventTime());
 
                 // A ViewDragHelper can only manipulate one view at a time.
                 if (mDragState == STATE_IDLE) {
@@ -1203,7 +1743,7 @@ public class ViewDragHelper {
                     final View toCapture = findTopChildUnder((int) x, (int) y);
                     tryCaptureViewForDrag(toCapture, pointerId);
 
-                    final int edgesTouched = mInitialEdgeTouched[pointerId];
+                    final int edgesTouched = getInitialEdgeTouched(pointerId);
                     if ((edgesTouched & mTrackingEdges) != 0) {
                         mCallback.onEdgeTouched(edgesTouched & mTrackingEdges, pointerId);
                     }
@@ -1223,25 +1763,44 @@ public class ViewDragHelper {
             case MotionEvent.ACTION_MOVE: {
                 if (mDragState == STATE_DRAGGING) {
                     final int index = MotionEventCompat.findPointerIndex(ev, mActivePointerId);
+                    final int slot = mSlots.find(mActivePointerId);
+                    if (index < 0 || slot < 0) {
+                        break;
+                    }
+                    // A batched move carries older samples in its history. The
+                    // velocity tracker consumes all of them, the drag itself
+                    // only needs the newest one so the view moves once per
+                    // batch.
                     final float x = MotionEventCompat.getX(ev, index);
                     final float y = MotionEventCompat.getY(ev, index);
-                    final int idx = (int) (x - mLastMotionX[mActivePointerId]);
-                    final int idy = (int) (y - mLastMotionY[mActivePointerId]);
+                    final float lastX = mLastMotionX[slot];
+                    final float lastY = mLastMotionY[slot];
+                    final int idx = (int) (x - lastX);
+                    final int idy = (int) (y - lastY);
 
-                    dragTo(mCapturedView.getLeft() + idx, mCapturedView.getTop() + idy, idx, idy);
+                    dragTo(getCapturedLeft() + idx, getCapturedTop() + idy, idx, idy);
 
                     saveLastMotion(ev);
+                    // Only advance the active pointer by what the view actually
+                    // moved, the sub-pixel remainder carries over to the next
+                    // batch instead of being dropped on every event.
+                    mLastMotionX[slot] = lastX + idx;
+                    mLastMotionY[slot] = lastY + idy;
                 } else {
                     // Check to see if any pointer is now over a draggable view.
                     final int pointerCount = MotionEventCompat.getPointerCount(ev);
                     for (int i = 0; i < pointerCount; i++) {
                         final int pointerId = MotionEventCompat.getPointerId(ev, i);
+                        final int slot = mSlots.find(pointerId);
+                        if (slot < 0) {
+                            continue;
+                        }
                         final float x = MotionEventCompat.getX(ev, i);
                         final float y = MotionEventCompat.getY(ev, i);
-                        final float dx = x - mInitialMotionX[pointerId];
-                        final float dy = y - mInitialMotionY[pointerId];
+                        final float dx = x - mInitialMotionX[slot];
+                        final float dy = y - mInitialMotionY[slot];
 
-                        reportNewEdgeDrags(dx, dy, pointerId);
+                        reportNewEdgeDrags(dx, dy, slot);
                         if (mDragState == STATE_DRAGGING) {
                             // Callback might have started an edge drag.
                             break;
@@ -1301,7 +1860,7 @@ public class ViewDragHelper {
 
             case MotionEvent.ACTION_CANCEL: {
                 if (mDragState == STATE_DRAGGING) {
-                    dispatchViewReleased(0, 0);
+                    dispatchViewReleased(0, 0, 0, 0);
                 }
                 cancel();
                 break;
@@ -1309,42 +1868,42 @@ public class ViewDragHelper {
         }
     }
 
-    private void reportNewEdgeDrags(float dx, float dy, int pointerId) {
+    private void reportNewEdgeDrags(float dx, float dy, int slot) {
         int dragsStarted = 0;
-        if (checkNewEdgeDrag(dx, dy, pointerId, EDGE_LEFT)) {
+        if (checkNewEdgeDrag(dx, dy, slot, EDGE_LEFT)) {
             dragsStarted |= EDGE_LEFT;
         }
-        if (checkNewEdgeDrag(dy, dx, pointerId, EDGE_TOP)) {
+        if (checkNewEdgeDrag(dy, dx, slot, EDGE_TOP)) {
             dragsStarted |= EDGE_TOP;
         }
-        if (checkNewEdgeDrag(dx, dy, pointerId, EDGE_RIGHT)) {
+        if (checkNewEdgeDrag(dx, dy, slot, EDGE_RIGHT)) {
             dragsStarted |= EDGE_RIGHT;
         }
-        if (checkNewEdgeDrag(dy, dx, pointerId, EDGE_BOTTOM)) {
+        if (checkNewEdgeDrag(dy, dx, slot, EDGE_BOTTOM)) {
             dragsStarted |= EDGE_BOTTOM;
         }
 
         if (dragsStarted != 0) {
-            mEdgeDragsInProgress[pointerId] |= dragsStarted;
-            mCallback.onEdgeDragStarted(dragsStarted, pointerId);
+            mEdgeDragsInProgress[slot] |= dragsStarted;
+            mCallback.onEdgeDragStarted(dragsStarted, mSlots.getPointerId(slot));
         }
     }
 
-    private boolean checkNewEdgeDrag(float delta, float odelta, int pointerId, int edge) {
+    private boolean checkNewEdgeDrag(float delta, float odelta, int slot, int edge) {
         final float absDelta = Math.abs(delta);
         final float absODelta = Math.abs(odelta);
 
-        if ((mInitialEdgeTouched[pointerId] & edge) != edge || (mTrackingEdges & edge) == 0
-                || (mEdgeDragsLocked[pointerId] & edge) == edge
-                || (mEdgeDragsInProgress[pointerId] & edge) == edge
+        if ((mInitialEdgeTouched[slot] & edge) != edge || (mTrackingEdges & edge) == 0
+                || (mEdgeDragsLocked[slot] & edge) == edge
+                || (mEdgeDragsInProgress[slot] & edge) == edge
                 || (absDelta <= mTouchSlop && absODelta <= mTouchSlop)) {
             return false;
         }
         if (absDelta < absODelta * 0.5f && mCallback.onEdgeLock(edge)) {
-            mEdgeDragsLocked[pointerId] |= edge;
+            mEdgeDragsLocked[slot] |= edge;
             return false;
         }
-        return (mEdgeDragsInProgress[pointerId] & edge) == 0 && absDelta > mTouchSlop;
+        return (mEdgeDragsInProgress[slot] & edge) == 0 && absDelta > mTouchSlop;
     }
 
     /**
@@ -1391,9 +1950,8 @@ public class ViewDragHelper {
      * @return true if the slop threshold has been crossed, false otherwise
      */
     public boolean checkTouchSlop(int directions) {
-        final int count = mInitialMotionX.length;
-        for (int i = 0; i < count; i++) {
-            if (checkTouchSlop(directions, i)) {
+        for (int i = 0; i < MAX_POINTERS; i++) {
+            if ((mPointersDown & 1 << i) != 0 && checkSlotTouchSlop(directions, i)) {
                 return true;
             }
         }
@@ -1419,15 +1977,16 @@ public class ViewDragHelper {
      * @return true if the slop threshold has been crossed, false otherwise
      */
     public boolean checkTouchSlop(int directions, int pointerId) {
-        if (!isPointerDown(pointerId)) {
-            return false;
-        }
+        final int slot = mSlots.find(pointerId);
+        return slot >= 0 && checkSlotTouchSlop(directions, slot);
+    }
 
+    private boolean checkSlotTouchSlop(int directions, int slot) {
         final boolean checkHorizontal = (directions & DIRECTION_HORIZONTAL) == DIRECTION_HORIZONTAL;
         final boolean checkVertical = (directions & DIRECTION_VERTICAL) == DIRECTION_VERTICAL;
 
-        final float dx = mLastMotionX[pointerId] - mInitialMotionX[pointerId];
-        final float dy = mLastMotionY[pointerId] - mInitialMotionY[pointerId];
+        final float dx = mLastMotionX[slot] - mInitialMotionX[slot];
+        final float dy = mLastMotionY[slot] - mInitialMotionY[slot];
 
         if (checkHorizontal && checkVertical) {
             return dx * dx + dy * dy > mTouchSlop * mTouchSlop;
@@ -1451,9 +2010,8 @@ public class ViewDragHelper {
      * current gesture
      */
     public boolean isEdgeTouched(int edges) {
-        final int count = mInitialEdgeTouched.length;
-        for (int i = 0; i < count; i++) {
-            if (isEdgeTouched(edges, i)) {
+        for (int i = 0; i < MAX_POINTERS; i++) {
+            if ((mPointersDown & 1 << i) != 0 && (mInitialEdgeTouched[i] & edges) != 0) {
                 return true;
             }
         }
@@ -1473,34 +2031,46 @@ public class ViewDragHelper {
      * current gesture
      */
     public boolean isEdgeTouched(int edges, int pointerId) {
-        return isPointerDown(pointerId) && (mInitialEdgeTouched[pointerId] & edges) != 0;
+        return (getInitialEdgeTouched(pointerId) & edges) != 0;
     }
 
     private void releaseViewForPointerUp() {
-        mVelocityTracker.computeCurrentVelocity(1000, mMaxVelocity);
-        final float xvel = clampMag(
-                VelocityTrackerCompat.getXVelocity(mVelocityTracker, mActivePointerId),
-                mMinVelocity, mMaxVelocity);
-        final float yvel = clampMag(
-                VelocityTrackerCompat.getYVelocity(mVelocityTracker, mActivePointerId),
-                mMinVelocity, mMaxVelocity);
-        dispatchViewReleased(xvel, yvel);
+        final int slot = mSlots.find(mActivePointerId);
+        if (slot >= 0) {
+            mVelocityEstimators[slot].computeCurrentVelocity(1000, mMaxVelocity);
+        }
+        final float rawXVel = getActiveXVelocity();
+        final float rawYVel = getActiveYVelocity();
+        final float xvel = clampMag(rawXVel, mMinVelocity, mMaxVelocity);
+        final float yvel = clampMag(rawYVel, mMinVelocity, mMaxVelocity);
+        dispatchViewReleased(xvel, yvel, rawXVel, rawYVel);
     }
 
     private void dragTo(int left, int top, int dx, int dy) {
         int clampedX = left;
         int clampedY = top;
-        final int oldLeft = mCapturedView.getLeft();
-        final int oldTop = mCapturedView.getTop();
+        final int oldLeft = getCapturedLeft();
+        final int oldTop = getCapturedTop();
         if (dx != 0) {
             clampedX = mCallback.clampViewPositionHorizontal(mCapturedView, left, dx);
-            mCapturedView.offsetLeftAndRight(clampedX - oldLeft);
         }
         if (dy != 0) {
             clampedY = mCallback.clampViewPositionVertical(mCapturedView, top, dy);
-            mCapturedView.offsetTopAndBottom(clampedY - oldTop);
         }
 
+        if (mDeferPositionUpdates) {
+            if (dx != 0 || dy != 0) {
+                mDragLeft = clampedX;
+                mDragTop = clampedY;
+                mDragPositionValid = true;
+                mPositionPending = true;
+            }
+            return;
+        }
+
+        offsetView(mCapturedView, dx != 0 ? clampedX - oldLeft : 0,
+                dy != 0 ? clampedY - oldTop : 0);
+
         if (dx != 0 || dy != 0) {
             final int clampedDx = clampedX - oldLeft;
             final int clampedDy = clampedY - oldTop;
@@ -1509,6 +2079,57 @@ public class ViewDragHelper {
         }
     }
 
+    /**
+     * @return left edge of the view as moved by this helper
+     */
+    private int getViewLeft(View view) {
+        return mMoveByTranslation
+                ? view.getLeft() + Math.round(view.getTranslationX()) : view.getLeft();
+    }
+
+    /**
+     * @return top edge of the view as moved by this helper
+     */
+    private int getViewTop(View view) {
+        return mMoveByTranslation
+                ? view.getTop() + Math.round(view.getTranslationY()) : view.getTop();
+    }
+
+    private void offsetView(View view, int dx, int dy) {
+        if (mMoveByTranslation) {
+            // A property change, the layout bounds stay put.
+            if (dx != 0) {
+                view.setTranslationX(view.getTranslationX() + dx);
+            }
+            if (dy != 0) {
+                view.setTranslationY(view.getTranslationY() + dy);
+            }
+            return;
+        }
+        if (dx != 0) {
+            view.offsetLeftAndRight(dx);
+        }
+        if (dy != 0) {
+            view.offsetTopAndBottom(dy);
+        }
+    }
+
+    /**
+     * @return left edge the pointer dragged the captured view to, ignoring any
+     * prediction
+     */
+    private int getCapturedLeft() {
+        return mDragPositionValid ? mDragLeft : getViewLeft(mCapturedView);
+    }
+
+    /**
+     * @return top edge the pointer dragged the captured view to, ignoring any
+     * prediction
+     */
+    private int getCapturedTop() {
+        return mDragPositionValid ? mDragTop : getViewTop(mCapturedView);
+    }
+
     /**
      * Determine if the currently captured view is under the given point in the
      * parent view's coordinate system. If there is no captured view this method
@@ -1537,8 +2158,10 @@ public class ViewDragHelper {
         if (view == null) {
             return false;
         }
-        return x >= view.getLeft() && x < view.getRight() && y >= view.getTop()
-                && y < view.getBottom();
+        final int left = getViewLeft(view);
+        final int top = getViewTop(view);
+        return x >= left && x < left + view.getWidth() && y >= top
+                && y < top + view.getHeight();
     }
 
     /**
@@ -1555,14 +2178,26 @@ public class ViewDragHelper {
         final int childCount = mParentView.getChildCount();
         for (int i = childCount - 1; i >= 0; i--) {
             final View child = mParentView.getChildAt(mCallback.getOrderedChildIndex(i));
-            if (x >= child.getLeft() && x < child.getRight() && y >= child.getTop()
-                    && y < child.getBottom()) {
+            if (isViewUnder(child, x, y)) {
                 return child;
             }
         }
         return null;
     }
 
+    /**
+     * Check if the given point within the parent view's coordinate system lies
+     * inside one of the edges that are currently being tracked.
+     *
+     * @param x X position to test in the parent's coordinate system
+     * @param y Y position to test in the parent's coordinate system
+     * @return true if a touch at (x, y) would be reported as an edge touch
+     * @see #setEdgeTrackingEnabled(int)
+     */
+    public boolean isTrackedEdgeUnder(int x, int y) {
+        return (getEdgeTouched(x, y) & mTrackingEdges) != 0;
+    }
+
     private int getEdgeTouched(int x, int y) {
         int result = 0;
 
@@ -25,6 +25,12 @@ public class SwipeBackActivity extends AppCompatActivity implements SwipeBackAct
         mHelper.onPostCreate();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mHelper.onActivityDestroy();
+    }
+
     @Override
     public View findViewById(int id) {
         View v = super.findViewById(id);
@@ -45,7 +51,9 @@ public class SwipeBackActivity extends AppCompatActivity implements SwipeBackAct
 
     @Override
     public void scrollToFinishActivity() {
-        Utils.convertActivityToTranslucent(this);
         getSwipeBackLayout().scrollToFinishActivity();
+        if (!getSwipeBackLayout().isDrawingSnapshotUnderlay()) {
+            Utils.convertActivityToTranslucent(this);
+        }
     }
 }
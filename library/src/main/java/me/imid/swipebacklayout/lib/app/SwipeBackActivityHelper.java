@@ -3,11 +3,11 @@ package me.imid.swipebacklayout.lib.app;
 import android.app.Activity;
 import android.graphics.Color;
 import android.graphics.drawable.ColorDrawable;
-import android.view.LayoutInflater;
 import android.view.View;
 
+import me.imid.swipebacklayout.lib.SwipeBackConfig;
 import me.imid.swipebacklayout.lib.SwipeBackLayout;
-import me.imid.swipebacklayout.lib.Utils;
+import me.imid.swipebacklayout.lib.TranslucencyController;
 
 /**
  * @author Yrom
@@ -23,14 +23,35 @@ public class SwipeBackActivityHelper {
 
     @SuppressWarnings("deprecation")
     public void onActivityCreate() {
+        // Resolve the conversion methods before the first swipe needs them.
+        TranslucencyController.getInstance().prewarm();
+        TranslucencyCoordinator.getInstance().push(this);
+        // The window stays non-opaque so the activity behind can show during
+        // swipes. Its background is drawn at most once, by the content that
+        // attachToActivity moves it onto, and not at all while an opaque
+        // view of the app covers it; the transparent drawable left on the
+        // window draws nothing.
         mActivity.getWindow().setBackgroundDrawable(new ColorDrawable(Color.TRANSPARENT));
         mActivity.getWindow().getDecorView().setBackgroundDrawable(null);
-        mSwipeBackLayout = (SwipeBackLayout) LayoutInflater.from(mActivity).inflate(
-                me.imid.swipebacklayout.lib.R.layout.swipeback_layout, null);
+        mSwipeBackLayout = SwipeBackLayout.create(mActivity, SwipeBackConfig.getDefault(mActivity));
+        mSwipeBackLayout.setId(me.imid.swipebacklayout.lib.R.id.swipe);
     }
 
     public void onPostCreate() {
         mSwipeBackLayout.attachToActivity(mActivity);
+        final SwipeBackActivityHelper previous =
+                TranslucencyCoordinator.getInstance().getBelow(this);
+        mSwipeBackLayout.setPreviousLayout(previous != null
+                ? previous.getSwipeBackLayout() : null);
+    }
+
+    /**
+     * Forget the activity right away rather than waiting for its destroy
+     * callback. Call from {@link Activity#onDestroy()} of a custom swipe back
+     * activity.
+     */
+    public void onActivityDestroy() {
+        TranslucencyCoordinator.getInstance().remove(this);
     }
 
     public View findViewById(int id) {
@@ -43,4 +64,8 @@ public class SwipeBackActivityHelper {
     public SwipeBackLayout getSwipeBackLayout() {
         return mSwipeBackLayout;
     }
+
+    Activity getActivity() {
+        return mActivity;
+    }
 }
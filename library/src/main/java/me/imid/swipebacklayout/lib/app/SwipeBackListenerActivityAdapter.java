@@ -6,16 +6,32 @@ import android.support.annotation.NonNull;
 import java.lang.ref.WeakReference;
 
 import me.imid.swipebacklayout.lib.SwipeBackLayout;
+import me.imid.swipebacklayout.lib.TranslucencyController;
 import me.imid.swipebacklayout.lib.Utils;
 
 /**
  * Created by laysionqet on 2018/4/24.
  */
-public class SwipeBackListenerActivityAdapter implements SwipeBackLayout.SwipeListenerEx {
+public class SwipeBackListenerActivityAdapter implements SwipeBackLayout.SwipeListenerEx,
+        SwipeBackLayout.EdgeTouchPendingListener {
     private final WeakReference<Activity> mActivity;
 
+    private final WeakReference<SwipeBackLayout> mSwipeBackLayout;
+
     public SwipeBackListenerActivityAdapter(@NonNull Activity activity) {
+        this(activity, null);
+    }
+
+    /**
+     * @param activity        Activity to convert and finish
+     * @param swipeBackLayout Layout of the activity, lets the adapter skip the
+     *                        window conversion when the layout draws a
+     *                        snapshot underlay
+     */
+    public SwipeBackListenerActivityAdapter(@NonNull Activity activity,
+                                            SwipeBackLayout swipeBackLayout) {
         mActivity = new WeakReference<>(activity);
+        mSwipeBackLayout = new WeakReference<>(swipeBackLayout);
     }
 
     @Override
@@ -23,10 +39,18 @@ public class SwipeBackListenerActivityAdapter implements SwipeBackLayout.SwipeLi
 
     }
 
+    @Override
+    public void onEdgeTouchPending(int edgeFlag) {
+        // The touch may still turn out to be a scroll, only get ready for
+        // the conversion.
+        TranslucencyController.getInstance().prewarm();
+    }
+
     @Override
     public void onEdgeTouch(int edgeFlag) {
         Activity activity = mActivity.get();
-        if (null != activity) {
+        SwipeBackLayout layout = mSwipeBackLayout.get();
+        if (null != activity && (null == layout || !layout.isDrawingSnapshotUnderlay())) {
             Utils.convertActivityToTranslucent(activity);
         }
     }
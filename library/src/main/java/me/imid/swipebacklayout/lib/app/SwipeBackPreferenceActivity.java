@@ -22,6 +22,12 @@ public class SwipeBackPreferenceActivity extends PreferenceActivity implements S
         mHelper.onPostCreate();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mHelper.onActivityDestroy();
+    }
+
     @Override
     public View findViewById(int id) {
         View v = super.findViewById(id);
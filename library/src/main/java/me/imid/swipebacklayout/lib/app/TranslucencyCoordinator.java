@@ -0,0 +1,174 @@
+package me.imid.swipebacklayout.lib.app;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Build;
+import android.os.Bundle;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import me.imid.swipebacklayout.lib.TranslucencyController;
+
+/**
+ * Keeps track of the activities of the process in stack order and makes sure
+ * only the top swipe back activity can be translucent.
+ * <p>
+ * A translucent activity makes the system draw the activity below it, so a
+ * deep stack of translucent activities is drawn in full on every frame. Once
+ * an activity is covered by a newer one it no longer needs to show what is
+ * behind it, and is made opaque. It becomes translucent again when it is back
+ * on top and a swipe starts.
+ * </p>
+ * <p>
+ * The order follows the activity lifecycle rather than the order helpers are
+ * created in: an activity moves to the top of its task when it resumes, which
+ * also covers activities brought back by REORDER_TO_FRONT or CLEAR_TOP, and
+ * leaves the stack when it is destroyed.
+ * </p>
+ */
+class TranslucencyCoordinator implements Application.ActivityLifecycleCallbacks {
+    private static final TranslucencyCoordinator sInstance = new TranslucencyCoordinator();
+
+    // Oldest first, the top of the stack is the last entry
+    private final List<WeakReference<Activity>> mStack = new ArrayList<>();
+
+    private final Map<Activity, SwipeBackActivityHelper> mHelpers = new WeakHashMap<>();
+
+    private boolean mRegistered;
+
+    private TranslucencyCoordinator() {
+    }
+
+    static TranslucencyCoordinator getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Put the activity of a newly created helper on top and make every
+     * activity below it opaque.
+     */
+    void push(SwipeBackActivityHelper helper) {
+        final Activity activity = helper.getActivity();
+        if (!mRegistered && activity.getApplication() != null) {
+            // Activities created before this one are only known once they
+            // resume again.
+            activity.getApplication().registerActivityLifecycleCallbacks(this);
+            mRegistered = true;
+        }
+        mHelpers.put(activity, helper);
+        moveToTop(activity);
+    }
+
+    /**
+     * @return The helper of the activity right below the given one in its
+     * task, or null if there is none or it is not a swipe back activity
+     */
+    SwipeBackActivityHelper getBelow(SwipeBackActivityHelper helper) {
+        final Activity activity = helper.getActivity();
+        final int index = indexOf(activity);
+        for (int i = index - 1; i >= 0; i--) {
+            final Activity below = mStack.get(i).get();
+            if (below == null || below.getTaskId() != activity.getTaskId()
+                    || isGone(below)) {
+                continue;
+            }
+            return mHelpers.get(below);
+        }
+        return null;
+    }
+
+    /**
+     * Forget a helper, usually because its activity is being destroyed.
+     */
+    void remove(SwipeBackActivityHelper helper) {
+        remove(helper.getActivity());
+    }
+
+    private void moveToTop(Activity activity) {
+        remove(activity);
+        final TranslucencyController controller = TranslucencyController.getInstance();
+        for (int i = mStack.size() - 1; i >= 0; i--) {
+            final Activity below = mStack.get(i).get();
+            if (below == null || below.getTaskId() != activity.getTaskId()
+                    || isGone(below) || !mHelpers.containsKey(below)) {
+                continue;
+            }
+            if (controller.getState(below) != TranslucencyController.STATE_OPAQUE) {
+                // Translucent from its theme or from a swipe, either way it
+                // would draw what is under it.
+                controller.convertFromTranslucent(below);
+            }
+        }
+        mStack.add(new WeakReference<>(activity));
+    }
+
+    private void remove(Activity activity) {
+        for (int i = mStack.size() - 1; i >= 0; i--) {
+            final Activity entry = mStack.get(i).get();
+            if (entry == null || entry == activity) {
+                mStack.remove(i);
+            }
+        }
+    }
+
+    private int indexOf(Activity activity) {
+        for (int i = mStack.size() - 1; i >= 0; i--) {
+            if (mStack.get(i).get() == activity) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isGone(Activity activity) {
+        return activity.isFinishing() || (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1
+                && activity.isDestroyed());
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+        final int index = indexOf(activity);
+        if (index >= 0 && index == mStack.size() - 1) {
+            return;
+        }
+        moveToTop(activity);
+        final SwipeBackActivityHelper helper = mHelpers.get(activity);
+        if (helper != null && helper.getSwipeBackLayout() != null) {
+            // Back on top from somewhere else in the stack, what is under it
+            // may have changed since it was created.
+            final SwipeBackActivityHelper below = getBelow(helper);
+            helper.getSwipeBackLayout().setPreviousLayout(below != null
+                    ? below.getSwipeBackLayout() : null);
+        }
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+        remove(activity);
+        mHelpers.remove(activity);
+    }
+}
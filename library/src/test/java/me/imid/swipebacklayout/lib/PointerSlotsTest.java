@@ -0,0 +1,116 @@
+package me.imid.swipebacklayout.lib;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Exercises the pointer slot table the way {@link ViewDragHelper} does, with
+ * pointer IDs spread over their whole 0 to 31 range.
+ */
+public class PointerSlotsTest {
+    private static final int CAPACITY = 10;
+
+    private static final int MAX_POINTER_ID = 31;
+
+    @Test
+    public void tracksPointersUpToCapacity() {
+        final PointerSlots slots = new PointerSlots(CAPACITY);
+        for (int id = 0; id <= MAX_POINTER_ID; id++) {
+            final int slot = slots.obtain(id);
+            if (id < CAPACITY) {
+                assertEquals(id, slot);
+                assertEquals(id, slots.getPointerId(slot));
+            } else {
+                assertEquals("Ignored once every slot is taken", -1, slot);
+            }
+        }
+        for (int id = 0; id <= MAX_POINTER_ID; id++) {
+            assertEquals(id < CAPACITY ? id : -1, slots.find(id));
+        }
+    }
+
+    @Test
+    public void reusesReleasedSlots() {
+        final PointerSlots slots = new PointerSlots(CAPACITY);
+        for (int id = 0; id < CAPACITY; id++) {
+            slots.obtain(id);
+        }
+        slots.release(slots.find(3));
+        assertEquals(-1, slots.find(3));
+        assertEquals(3, slots.obtain(MAX_POINTER_ID));
+        assertEquals(3, slots.find(MAX_POINTER_ID));
+        slots.clear();
+        for (int id = 0; id <= MAX_POINTER_ID; id++) {
+            assertEquals(-1, slots.find(id));
+        }
+        assertEquals(-1, slots.find(ViewDragHelper.INVALID_POINTER));
+    }
+
+    @Test
+    public void eventsDoNotAllocate() {
+        final PointerSlots slots = new PointerSlots(CAPACITY);
+        final VelocityEstimator[] estimators = new VelocityEstimator[CAPACITY];
+        for (int i = 0; i < CAPACITY; i++) {
+            estimators[i] = new VelocityEstimator();
+        }
+        // Warm up so class loading and compilation are not counted.
+        runEvents(slots, estimators, 1000);
+
+        final long overhead = -allocatedBytes() + allocatedBytes();
+        final long before = allocatedBytes();
+        final int events = runEvents(slots, estimators, 1000);
+        final long allocated = allocatedBytes() - before - overhead;
+        assertTrue("Ran " + events + " events", events > 0);
+        assertEquals("Bytes allocated over " + events + " events", 0, allocated);
+    }
+
+    /**
+     * Put every pointer ID down, move them all and lift them, as a stream of
+     * single pointer events.
+     *
+     * @return the number of events run
+     */
+    private static int runEvents(PointerSlots slots, VelocityEstimator[] estimators,
+                                 int gestures) {
+        int events = 0;
+        long time = 0;
+        for (int g = 0; g < gestures; g++) {
+            for (int id = 0; id <= MAX_POINTER_ID; id++) {
+                final int slot = slots.obtain(id);
+                if (slot >= 0) {
+                    estimators[slot].clear();
+                    estimators[slot].addMovement(time, id, id);
+                }
+                events++;
+            }
+            for (int move = 1; move <= 4; move++) {
+                time += 8;
+                for (int id = 0; id <= MAX_POINTER_ID; id++) {
+                    final int slot = slots.find(id);
+                    if (slot >= 0) {
+                        estimators[slot].addMovement(time, id + move * 10, id);
+                        estimators[slot].computeCurrentVelocity(1000, Float.MAX_VALUE);
+                    }
+                    events++;
+                }
+            }
+            for (int id = 0; id <= MAX_POINTER_ID; id++) {
+                final int slot = slots.find(id);
+                if (slot >= 0) {
+                    slots.release(slot);
+                }
+                events++;
+            }
+        }
+        return events;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,46 @@
+package me.imid.swipebacklayout.lib;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks releases around the scroll threshold, including ones too slow to
+ * count as a fling.
+ */
+public class ProjectionReleasePolicyTest {
+    private static final int RANGE = 1080; // px
+
+    private static final float THRESHOLD = 0.3f;
+
+    private static final float EPSILON = 0.01f;
+
+    // ViewDragHelper's minimum fling velocity of 400dp/s at xxhdpi
+    private static final float MIN_FLING_VELOCITY = 400 * 3; // px/s
+
+    private final ProjectionReleasePolicy mPolicy = new ProjectionReleasePolicy();
+
+    @Test
+    public void slowReleaseShortOfThresholdFinishes() {
+        final float velocity = MIN_FLING_VELOCITY / 4;
+        assertTrue(mPolicy.shouldFinish(THRESHOLD - EPSILON, velocity, RANGE, THRESHOLD));
+    }
+
+    @Test
+    public void slowReleaseAwayFromThresholdReturns() {
+        final float velocity = -MIN_FLING_VELOCITY / 4;
+        assertFalse(mPolicy.shouldFinish(THRESHOLD + EPSILON, velocity, RANGE, THRESHOLD));
+    }
+
+    @Test
+    public void cancelledReleaseDecidesOnPosition() {
+        assertFalse(mPolicy.shouldFinish(THRESHOLD - EPSILON, 0, RANGE, THRESHOLD));
+        assertTrue(mPolicy.shouldFinish(THRESHOLD + EPSILON, 0, RANGE, THRESHOLD));
+    }
+
+    @Test
+    public void lateFlickAgainstSwipeReturns() {
+        assertFalse(mPolicy.shouldFinish(0.6f, -MIN_FLING_VELOCITY * 4, RANGE, THRESHOLD));
+    }
+}
@@ -0,0 +1,113 @@
+package me.imid.swipebacklayout.lib;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives a {@link SpringSettler} with a fake clock, one 16ms frame at a time.
+ */
+public class SpringSettlerTest {
+    private static final long FRAME = 16000000L; // ns
+
+    private long mNow;
+
+    private SpringSettler mSettler;
+
+    @Before
+    public void setUp() {
+        mNow = 0;
+        mSettler = new SpringSettler(new SpringSettler.Clock() {
+            @Override
+            public long nanoTime() {
+                return mNow;
+            }
+        });
+    }
+
+    @Test
+    public void settlesFromRestWithoutOvershoot() {
+        mSettler.start(1000, 0, 0, 0, 0, 0);
+        int previous = 1000;
+        while (!mSettler.isFinished()) {
+            mNow += FRAME;
+            mSettler.computeOffset();
+            final int x = mSettler.getCurrX();
+            assertTrue("Never past the target, at " + x, x >= 0);
+            assertTrue("Always moving towards the target", x <= previous);
+            previous = x;
+        }
+        assertEquals(0, mSettler.getCurrX());
+        // (1 + wt) * e^(-wt) drops below half a pixel out of 1000 at wt ~ 10,
+        // that is about 320ms with the default stiffness.
+        assertEquals(320, mNow / 1000000, 2 * FRAME / 1000000);
+    }
+
+    @Test
+    public void clampsFastLaunchAtTarget() {
+        mSettler.setOvershootClamping(true);
+        // Fast enough towards the target to pass it without clamping
+        mSettler.start(500, 0, 0, 0, -30000, 0);
+        while (!mSettler.isFinished()) {
+            mNow += FRAME;
+            mSettler.computeOffset();
+            assertTrue("Never past the target", mSettler.getCurrX() >= 0);
+        }
+        assertEquals(0, mSettler.getCurrX());
+        assertTrue("Ends within a few frames", mNow <= 10 * FRAME);
+    }
+
+    @Test
+    public void overshootsFastLaunchWithoutClamping() {
+        mSettler.start(500, 0, 0, 0, -30000, 0);
+        int min = 500;
+        while (!mSettler.isFinished()) {
+            mNow += FRAME;
+            mSettler.computeOffset();
+            min = Math.min(min, mSettler.getCurrX());
+        }
+        assertTrue("Passes the target once", min < 0);
+        assertEquals(0, mSettler.getCurrX());
+    }
+
+    @Test
+    public void positionDoesNotDependOnFrameRate() {
+        mSettler.start(0, 800, 0, 0, 0, 2000);
+        for (int i = 0; i < 6; i++) {
+            mNow += FRAME;
+            mSettler.computeOffset();
+        }
+        final int steppedY = mSettler.getCurrY();
+
+        mNow = 0;
+        mSettler.start(0, 800, 0, 0, 0, 2000);
+        mNow = 6 * FRAME;
+        mSettler.computeOffset();
+        assertEquals(steppedY, mSettler.getCurrY());
+    }
+
+    @Test
+    public void keepsInitialVelocity() {
+        mSettler.start(1000, 0, 0, 0, -1500, 0);
+        mSettler.computeOffset();
+        assertEquals(-1500, mSettler.getXVelocity(), 0.01f);
+        assertFalse(mSettler.isFinished());
+    }
+
+    @Test
+    public void retargetKeepsPositionAndVelocity() {
+        mSettler.start(1000, 0, 0, 0, 0, 0);
+        mNow += 5 * FRAME;
+        mSettler.computeOffset();
+        final int x = mSettler.getCurrX();
+        final float velocity = mSettler.getXVelocity();
+        mSettler.retarget(-200, 0);
+        mSettler.computeOffset();
+        assertEquals(x, mSettler.getCurrX());
+        assertEquals(velocity, mSettler.getXVelocity(), 0.01f);
+        assertEquals(-200, mSettler.getFinalX());
+    }
+}
@@ -0,0 +1,141 @@
+package me.imid.swipebacklayout.lib;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the least squares and impulse strategies on synthetic fling
+ * traces, sampled every 8ms as from a 120Hz touch panel.
+ */
+public class VelocityEstimatorTest {
+    private static final int INTERVAL = 8; // ms
+
+    private static final float MAX_VELOCITY = 24000; // px/s
+
+    // SwipeBackLayout's MIN_FLING_VELOCITY of 400dp/s at xxhdpi
+    private static final float MIN_FLING_VELOCITY = 400 * 3; // px/s
+
+    /**
+     * Position of a synthetic pointer over time.
+     */
+    private interface Trace {
+        float x(long time);
+    }
+
+    @Test
+    public void constantVelocity() {
+        // 3 px/ms
+        final Trace trace = new Trace() {
+            @Override
+            public float x(long time) {
+                return 3 * time;
+            }
+        };
+        assertEquals(3000, velocity(VelocityEstimator.STRATEGY_LSQ2, trace, 10), 30);
+        assertEquals(3000, velocity(VelocityEstimator.STRATEGY_IMPULSE, trace, 10), 30);
+    }
+
+    @Test
+    public void deceleratingFling() {
+        // 4 px/ms slowing down by 0.01 px/ms per ms, 3.12 px/ms at the last
+        // sample
+        final Trace trace = new Trace() {
+            @Override
+            public float x(long time) {
+                return 4 * time - 0.005f * time * time;
+            }
+        };
+        final float lsq2 = velocity(VelocityEstimator.STRATEGY_LSQ2, trace, 12);
+        final float impulse = velocity(VelocityEstimator.STRATEGY_IMPULSE, trace, 12);
+        // The quadratic fits the trace exactly.
+        assertEquals(3120, lsq2, 31);
+        // The impulse strategy averages over the whole window.
+        assertEquals(3120, impulse, 3120 * 0.15f);
+        assertTrue("LSQ2 tracks deceleration closer than impulse",
+                Math.abs(lsq2 - 3120) < Math.abs(impulse - 3120));
+    }
+
+    @Test
+    public void lastSampleWeighsMoreWithImpulse() {
+        // 3 px/ms, with the last sample 4px ahead of the finger
+        final Trace trace = new Trace() {
+            @Override
+            public float x(long time) {
+                return 3 * time + (time == 9 * INTERVAL ? 4 : 0);
+            }
+        };
+        final float lsq2 = velocity(VelocityEstimator.STRATEGY_LSQ2, trace, 10);
+        final float impulse = velocity(VelocityEstimator.STRATEGY_IMPULSE, trace, 10);
+        // The fit spreads the error over every sample, the impulse strategy
+        // takes in the whole energy of the last segment.
+        assertTrue("lsq2 " + lsq2 + " impulse " + impulse,
+                Math.abs(lsq2 - 3000) < Math.abs(impulse - 3000));
+    }
+
+    @Test
+    public void pauseBeforeRelease() {
+        final int[] strategies = {
+                VelocityEstimator.STRATEGY_LSQ2, VelocityEstimator.STRATEGY_IMPULSE
+        };
+        for (int strategy : strategies) {
+            final VelocityEstimator estimator = new VelocityEstimator(strategy);
+            for (int i = 0; i < 10; i++) {
+                estimator.addMovement(i * INTERVAL, 3 * i * INTERVAL, 0);
+            }
+            // Held still for 50ms before lifting
+            estimator.addMovement(9 * INTERVAL + 50, 27 * INTERVAL, 0);
+            estimator.computeCurrentVelocity(1000, MAX_VELOCITY);
+            assertEquals(0, estimator.getXVelocity(), 0);
+        }
+    }
+
+    @Test
+    public void sameSideOfMinFlingVelocity() {
+        final int[] strategies = {
+                VelocityEstimator.STRATEGY_LSQ2, VelocityEstimator.STRATEGY_IMPULSE
+        };
+        final float[] ratios = {0.9f, 0.95f, 1.05f, 1.1f};
+        for (final float ratio : ratios) {
+            // Reported positions are whole pixels, as from a touch panel.
+            final Trace trace = new Trace() {
+                @Override
+                public float x(long time) {
+                    return Math.round(MIN_FLING_VELOCITY * ratio * time / 1000);
+                }
+            };
+            for (int strategy : strategies) {
+                final float velocity = velocity(strategy, trace, 10);
+                assertEquals("Strategy " + strategy + " at " + ratio + " of the minimum, got "
+                        + velocity, ratio > 1, velocity > MIN_FLING_VELOCITY);
+            }
+        }
+    }
+
+    @Test
+    public void clampedToMaxVelocity() {
+        final Trace trace = new Trace() {
+            @Override
+            public float x(long time) {
+                return -100 * time;
+            }
+        };
+        assertEquals(-MAX_VELOCITY, velocity(VelocityEstimator.STRATEGY_LSQ2, trace, 10), 0);
+        assertEquals(-MAX_VELOCITY, velocity(VelocityEstimator.STRATEGY_IMPULSE, trace, 10), 0);
+    }
+
+    /**
+     * @return X velocity in pixels per second estimated from the first
+     * samples of a trace
+     */
+    private static float velocity(int strategy, Trace trace, int samples) {
+        final VelocityEstimator estimator = new VelocityEstimator(strategy);
+        for (int i = 0; i < samples; i++) {
+            final long time = i * INTERVAL;
+            estimator.addMovement(time, trace.x(time), 0);
+        }
+        estimator.computeCurrentVelocity(1000, MAX_VELOCITY);
+        return estimator.getXVelocity();
+    }
+}